@@ -2,17 +2,28 @@ package org.web.labs.inside.jerry.nio;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.web.labs.inside.jerry.was.http.GzipEncoder;
+import org.web.labs.inside.jerry.was.http.RouteMatch;
+import org.web.labs.inside.jerry.was.http.Router;
+import org.web.labs.inside.jerry.was.log.AccessLog;
+import org.web.labs.inside.jerry.was.metrics.ServerMetrics;
+
 /**
  * NIOHttpServer - A non-blocking HTTP server using Java NIO.
  * 
@@ -23,6 +34,10 @@ import java.util.logging.Logger;
  * - Non-blocking I/O using Selector
  * - Single-threaded event loop
  * - Simple HTTP request/response handling
+ * - gzip encoding for larger text responses
+ * - Header read deadline and minimum write rate, kept on a hashed timer wheel
+ * - Prometheus metrics at /metrics
+ * - Asynchronous access log
  * - Graceful shutdown support
  */
 public class NIOHttpServer {
@@ -32,11 +47,36 @@ public class NIOHttpServer {
     private static final int DEFAULT_PORT = 8888;
     private static final int BUFFER_SIZE = 4096;
     private static final long SELECT_TIMEOUT = 1000L;
+    private static final int COMPRESSION_THRESHOLD = 1024;
+    private static final long TIMER_TICK_MILLIS = 100;
+    private static final int TIMER_WHEEL_SIZE = 512;
+    private static final int DEFAULT_HEADER_TIMEOUT_MILLIS = 10000;
+    private static final int DEFAULT_MIN_WRITE_RATE = 4096;
+    // Allowed on top of the minimum write rate, so small responses to a busy client are not cut off
+    private static final int WRITE_GRACE_MILLIS = 10000;
+    
+    private enum Endpoint { HOME, HEALTH, ECHO, METRICS }
+    
+    private static final Router<Endpoint> ROUTES = Router.<Endpoint>builder()
+            .add("/health", Endpoint.HEALTH)
+            .add("/echo", Endpoint.ECHO)
+            .add("/metrics", Endpoint.METRICS)
+            .add("/*", Endpoint.HOME)
+            .compile();
     
     private final int port;
     private final AtomicBoolean running = new AtomicBoolean(false);
     private Selector selector;
     private ServerSocketChannel serverChannel;
+    private final GzipEncoder gzipEncoder = new GzipEncoder();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final ServerMetrics metrics = new ServerMetrics("jerry_nio");
+    private final TimerWheel timers = new TimerWheel(TIMER_TICK_MILLIS, TIMER_WHEEL_SIZE);
+    private final LongAdder headerTimeouts = new LongAdder();
+    private final LongAdder writeTimeouts = new LongAdder();
+    private AccessLog accessLog;
+    private int headerTimeoutMillis = DEFAULT_HEADER_TIMEOUT_MILLIS;
+    private int minWriteRate = DEFAULT_MIN_WRITE_RATE;
     
     public NIOHttpServer() {
         this(DEFAULT_PORT);
@@ -44,15 +84,29 @@ public class NIOHttpServer {
     
     public NIOHttpServer(int port) {
         this.port = port;
+        
+        metrics.gauge("connections_active", "Open client connections.", openConnections::get)
+               .gauge("gzip_compression_ratio", "Compressed to original size of gzip-encoded responses.", gzipEncoder::getCompressionRatio)
+               .counter("header_read_timeouts", "Connections closed because a request header arrived too slowly.", headerTimeouts::sum)
+               .counter("write_timeouts", "Connections closed because the client read a response too slowly.", writeTimeouts::sum);
     }
     
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         int port = DEFAULT_PORT;
+        String accessLogPath = null;
+        Integer headerTimeout = null;
+        Integer minWriteRate = null;
         
         // Parse command line arguments
         for (int i = 0; i < args.length; i++) {
             if (("-p".equals(args[i]) || "--port".equals(args[i])) && i + 1 < args.length) {
                 port = Integer.parseInt(args[++i]);
+            } else if ("--access-log".equals(args[i]) && i + 1 < args.length) {
+                accessLogPath = args[++i];
+            } else if ("--header-timeout".equals(args[i]) && i + 1 < args.length) {
+                headerTimeout = Integer.parseInt(args[++i]);
+            } else if ("--min-write-rate".equals(args[i]) && i + 1 < args.length) {
+                minWriteRate = Integer.parseInt(args[++i]);
             } else if ("-h".equals(args[i]) || "--help".equals(args[i])) {
                 printHelp();
                 return;
@@ -60,11 +114,26 @@ public class NIOHttpServer {
         }
         
         NIOHttpServer server = new NIOHttpServer(port);
+        if (headerTimeout != null) {
+            server.setHeaderTimeout(headerTimeout);
+        }
+        if (minWriteRate != null) {
+            server.setMinWriteRate(minWriteRate);
+        }
+        AccessLog accessLog = accessLogPath != null ? new AccessLog(Paths.get(accessLogPath)) : null;
+        server.setAccessLog(accessLog);
         
         // Add shutdown hook
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             LOGGER.info("Shutting down server...");
             server.stop();
+            if (accessLog != null) {
+                try {
+                    accessLog.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Error closing access log", e);
+                }
+            }
         }));
         
         server.start();
@@ -76,8 +145,11 @@ public class NIOHttpServer {
         System.out.println("Usage: java NIOHttpServer [options]");
         System.out.println();
         System.out.println("Options:");
-        System.out.println("  -p, --port <port>    Server port (default: 8888)");
-        System.out.println("  -h, --help           Show this help message");
+        System.out.println("  -p, --port <port>            Server port (default: 8888)");
+        System.out.println("  --access-log <file>          Write an access log to the file (default: off)");
+        System.out.println("  --header-timeout <ms>        Longest wait for a complete request header (default: 10000)");
+        System.out.println("  --min-write-rate <bytes/s>   Slowest rate a client may read a response at (default: 4096)");
+        System.out.println("  -h, --help                   Show this help message");
     }
     
     /**
@@ -103,8 +175,9 @@ public class NIOHttpServer {
             
             // Event loop
             while (running.get()) {
-                // Wait for events
-                int readyCount = selector.select(SELECT_TIMEOUT);
+                // Wait for events, waking each tick while deadlines are pending
+                int readyCount = selector.select(timers.isEmpty() ? SELECT_TIMEOUT : TIMER_TICK_MILLIS);
+                timers.advance(System.nanoTime());
                 
                 if (readyCount == 0) {
                     continue;
@@ -165,9 +238,17 @@ public class NIOHttpServer {
             
             // Attach a new connection context
             ConnectionContext context = new ConnectionContext();
-            clientChannel.register(selector, SelectionKey.OP_READ, context);
+            context.remote = clientChannel.getRemoteAddress();
+            SelectionKey clientKey = clientChannel.register(selector, SelectionKey.OP_READ, context);
+            openConnections.incrementAndGet();
+            if (headerTimeoutMillis > 0) {
+                // No keep-alive here, so the header deadline runs from accept
+                context.deadline = timers.schedule(headerTimeoutMillis, () -> expire(clientKey, headerTimeouts));
+            }
             
-            LOGGER.info("New connection from: " + clientChannel.getRemoteAddress());
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("New connection from: " + context.remote);
+            }
         }
     }
     
@@ -188,6 +269,7 @@ public class NIOHttpServer {
         }
         
         if (bytesRead > 0) {
+            metrics.addBytesIn(bytesRead);
             buffer.flip();
             byte[] data = new byte[buffer.remaining()];
             buffer.get(data);
@@ -197,14 +279,19 @@ public class NIOHttpServer {
             
             // Check if request is complete (simple check for double CRLF)
             if (context.isRequestComplete()) {
-                // Parse and log request
                 String request = context.getRequest();
-                LOGGER.info("Received request:\n" + request.substring(0, Math.min(200, request.length())));
                 
                 // Prepare response
-                String response = buildResponse(request);
+                context.startNanos = System.nanoTime();
+                byte[] response = buildResponse(request, context);
                 context.setResponse(response);
                 
+                context.cancelDeadline();
+                if (minWriteRate > 0) {
+                    long writeMillis = WRITE_GRACE_MILLIS + response.length * 1000L / minWriteRate;
+                    context.deadline = timers.schedule(writeMillis, () -> expire(key, writeTimeouts));
+                }
+                
                 // Switch to write mode
                 key.interestOps(SelectionKey.OP_WRITE);
             }
@@ -221,20 +308,36 @@ public class NIOHttpServer {
         ByteBuffer responseBuffer = context.getResponseBuffer();
         
         if (responseBuffer.hasRemaining()) {
-            clientChannel.write(responseBuffer);
+            metrics.addBytesOut(clientChannel.write(responseBuffer));
         }
         
         if (!responseBuffer.hasRemaining()) {
+            long latency = System.nanoTime() - context.startNanos;
+            metrics.recordRequest(context.route, 200, latency);
+            if (accessLog != null) {
+                accessLog.log(context.remote, context.method, context.path, 200, responseBuffer.limit(), latency);
+            }
             // Response sent, close connection
-            LOGGER.info("Response sent, closing connection");
             closeChannel(key);
         }
     }
     
+    /**
+     * Close a connection that missed its deadline.
+     */
+    private void expire(SelectionKey key, LongAdder counter) {
+        counter.increment();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            ConnectionContext context = (ConnectionContext) key.attachment();
+            LOGGER.fine("Closing slow connection: " + (context != null ? context.remote : null));
+        }
+        closeChannel(key);
+    }
+    
     /**
      * Build HTTP response based on request.
      */
-    private String buildResponse(String request) {
+    private byte[] buildResponse(String request, ConnectionContext context) {
         // Parse request line
         String[] lines = request.split("\r\n");
         String requestLine = lines.length > 0 ? lines[0] : "";
@@ -242,8 +345,65 @@ public class NIOHttpServer {
         
         String method = parts.length > 0 ? parts[0] : "GET";
         String path = parts.length > 1 ? parts[1] : "/";
+        context.method = method;
+        context.path = path;
+        
+        int queryIndex = path.indexOf('?');
+        RouteMatch<Endpoint> match = ROUTES.match(path, queryIndex >= 0 ? queryIndex : path.length());
+        Endpoint endpoint = match != null ? match.getHandler() : Endpoint.HOME;
+        context.route = match != null ? match.getPattern() : "/*";
         
-        // Build response body
+        String bodyStr;
+        String contentType;
+        switch (endpoint) {
+            case HEALTH:
+                bodyStr = "{\"status\":\"healthy\",\"server\":\"NIOHttpServer\",\"port\":" + port + "}";
+                contentType = "application/json";
+                break;
+            case ECHO:
+                bodyStr = request;
+                contentType = "text/plain";
+                break;
+            case METRICS:
+                bodyStr = metrics.toPrometheus();
+                contentType = ServerMetrics.CONTENT_TYPE;
+                break;
+            default:
+                bodyStr = buildHomePage(method, path);
+                contentType = "text/html";
+                break;
+        }
+        
+        byte[] bodyBytes = bodyStr.getBytes(StandardCharsets.UTF_8);
+        boolean gzip = bodyBytes.length >= COMPRESSION_THRESHOLD && acceptsGzip(lines);
+        if (gzip) {
+            bodyBytes = gzipEncoder.compress(bodyBytes);
+        }
+        
+        // Build response
+        StringBuilder response = new StringBuilder();
+        response.append("HTTP/1.1 200 OK\r\n");
+        response.append("Content-Type: ").append(contentType).append("\r\n");
+        response.append("Content-Length: ").append(bodyBytes.length).append("\r\n");
+        if (gzip) {
+            response.append("Content-Encoding: gzip\r\n");
+        }
+        response.append("Vary: Accept-Encoding\r\n");
+        response.append("Connection: close\r\n");
+        response.append("Server: NIOHttpServer/1.0\r\n");
+        response.append("\r\n");
+        
+        byte[] head = response.toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] result = new byte[head.length + bodyBytes.length];
+        System.arraycopy(head, 0, result, 0, head.length);
+        System.arraycopy(bodyBytes, 0, result, head.length, bodyBytes.length);
+        return result;
+    }
+    
+    /**
+     * Build the default page describing the request and the endpoints.
+     */
+    private String buildHomePage(String method, String path) {
         StringBuilder body = new StringBuilder();
         body.append("<!DOCTYPE html>\n");
         body.append("<html>\n");
@@ -261,39 +421,75 @@ public class NIOHttpServer {
         body.append("<li><a href=\"/\">/</a> - This page</li>\n");
         body.append("<li><a href=\"/health\">/health</a> - Health check (JSON)</li>\n");
         body.append("<li><a href=\"/echo\">/echo</a> - Echo request</li>\n");
+        body.append("<li><a href=\"/metrics\">/metrics</a> - Prometheus metrics</li>\n");
         body.append("</ul>\n");
         body.append("</body>\n");
         body.append("</html>\n");
         
-        String bodyStr = body.toString();
-        String contentType = "text/html";
-        
-        // Handle different paths
-        if (path.equals("/health")) {
-            bodyStr = "{\"status\":\"healthy\",\"server\":\"NIOHttpServer\",\"port\":" + port + "}";
-            contentType = "application/json";
-        } else if (path.equals("/echo")) {
-            bodyStr = request;
-            contentType = "text/plain";
+        return body.toString();
+    }
+    
+    /**
+     * Check the Accept-Encoding request header for gzip.
+     */
+    private boolean acceptsGzip(String[] lines) {
+        for (int i = 1; i < lines.length && !lines[i].isEmpty(); i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0 && lines[i].substring(0, colon).trim().equalsIgnoreCase("Accept-Encoding")) {
+                return GzipEncoder.acceptsGzip(lines[i].substring(colon + 1));
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Ratio of compressed to original size for gzip-encoded responses.
+     */
+    public double getCompressionRatio() {
+        return gzipEncoder.getCompressionRatio();
+    }
+    
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Set how long a client may take to send its request header (0 = no limit).
+     * Call before start().
+     */
+    public void setHeaderTimeout(int timeoutMillis) {
+        this.headerTimeoutMillis = timeoutMillis;
+    }
+    
+    /**
+     * Set the slowest rate (bytes per second) at which a client must read its
+     * response before the connection is closed (0 = no limit). Call before start().
+     */
+    public void setMinWriteRate(int bytesPerSecond) {
+        this.minWriteRate = bytesPerSecond;
+    }
+    
+    /**
+     * Write one line per request to the given access log; null disables logging.
+     * Call before start().
+     */
+    public void setAccessLog(AccessLog accessLog) {
+        this.accessLog = accessLog;
+        if (accessLog != null) {
+            metrics.counter("access_log_dropped", "Access log records dropped because the buffer was full.",
+                    accessLog::getDroppedCount);
         }
-        
-        // Build response
-        StringBuilder response = new StringBuilder();
-        response.append("HTTP/1.1 200 OK\r\n");
-        response.append("Content-Type: ").append(contentType).append("\r\n");
-        response.append("Content-Length: ").append(bodyStr.getBytes().length).append("\r\n");
-        response.append("Connection: close\r\n");
-        response.append("Server: NIOHttpServer/1.0\r\n");
-        response.append("\r\n");
-        response.append(bodyStr);
-        
-        return response.toString();
     }
     
     /**
      * Close a channel associated with a key.
      */
     private void closeChannel(SelectionKey key) {
+        Object context = key.attach(null);
+        if (context instanceof ConnectionContext) {
+            ((ConnectionContext) context).cancelDeadline();
+            openConnections.decrementAndGet();
+        }
         try {
             key.cancel();
             key.channel().close();
@@ -325,6 +521,20 @@ public class NIOHttpServer {
     private static class ConnectionContext {
         private final StringBuilder requestBuilder = new StringBuilder();
         private ByteBuffer responseBuffer;
+        private long startNanos;
+        private String route;
+        private SocketAddress remote;
+        private String method;
+        private String path;
+        // Header deadline until the request is complete, then the write deadline
+        private TimerWheel.Timeout deadline;
+        
+        public void cancelDeadline() {
+            if (deadline != null) {
+                deadline.cancel();
+                deadline = null;
+            }
+        }
         
         public void appendRequest(String data) {
             requestBuilder.append(data);
@@ -340,8 +550,8 @@ public class NIOHttpServer {
             return request.contains("\r\n\r\n") || request.contains("\n\n");
         }
         
-        public void setResponse(String response) {
-            responseBuffer = ByteBuffer.wrap(response.getBytes());
+        public void setResponse(byte[] response) {
+            responseBuffer = ByteBuffer.wrap(response);
         }
         
         public ByteBuffer getResponseBuffer() {
@@ -0,0 +1,165 @@
+package org.web.labs.inside.jerry.nio;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TimerWheel - Hashed timing wheel for connection deadlines on an event loop.
+ *
+ * Each timeout is hashed by the tick it expires on into a ring of buckets, a
+ * doubly linked list each, so scheduling and cancelling are O(1) and a tick
+ * only looks at the one bucket that is due. Timeouts further out than one
+ * turn of the wheel share a bucket with nearer ones and are skipped until
+ * their own turn comes. Deadlines are rounded up to whole ticks.
+ *
+ * Not thread-safe: schedule, cancel and advance must all be called from the
+ * selector thread.
+ */
+final class TimerWheel {
+
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final long startNanos;
+    // Last tick whose bucket has been processed
+    private long currentTick = 0;
+    private int size = 0;
+
+    /**
+     * @param tickMillis resolution of the wheel
+     * @param wheelSize  number of buckets, rounded up to a power of two
+     */
+    TimerWheel(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Invalid timer wheel: " + tickMillis + " ms x " + wheelSize);
+        }
+        int buckets = Integer.highestOneBit(wheelSize);
+        if (buckets < wheelSize) {
+            buckets <<= 1;
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.buckets = new Timeout[buckets];
+        this.mask = buckets - 1;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Run the task once the delay has passed, on a later call to advance().
+     */
+    Timeout schedule(long delayMillis, Runnable task) {
+        long elapsed = System.nanoTime() - this.startNanos + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        long tick = Math.max(this.currentTick + 1, (elapsed + this.tickNanos - 1) / this.tickNanos);
+        Timeout timeout = new Timeout(tick, task);
+        this.link(timeout);
+        return timeout;
+    }
+
+    /**
+     * Run every task whose deadline has passed by now.
+     */
+    void advance(long nowNanos) {
+        long nowTick = (nowNanos - this.startNanos) / this.tickNanos;
+        // After a long stall one turn of the wheel visits every bucket
+        long last = Math.min(nowTick, this.currentTick + this.buckets.length);
+        while (this.currentTick < last && this.size > 0) {
+            this.currentTick++;
+            this.expire(this.buckets[(int) (this.currentTick & this.mask)], nowTick);
+        }
+        this.currentTick = Math.max(this.currentTick, nowTick);
+    }
+
+    private void expire(Timeout timeout, long nowTick) {
+        // Take every due timeout out before running any: a task may cancel or
+        // schedule others, including the ones next to it in this bucket
+        Timeout expired = null;
+        Timeout last = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.deadlineTick <= nowTick) {
+                this.unlink(timeout);
+                timeout.due = true;
+                if (last == null) {
+                    expired = timeout;
+                } else {
+                    last.next = timeout;
+                }
+                last = timeout;
+            }
+            timeout = next;
+        }
+        while (expired != null) {
+            timeout = expired;
+            expired = timeout.next;
+            timeout.next = null;
+            // Skipped if an earlier task cancelled it
+            if (timeout.due) {
+                timeout.due = false;
+                timeout.task.run();
+            }
+        }
+    }
+
+    /**
+     * Pending timeouts.
+     */
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    private void link(Timeout timeout) {
+        int bucket = (int) (timeout.deadlineTick & this.mask);
+        timeout.next = this.buckets[bucket];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        this.buckets[bucket] = timeout;
+        timeout.pending = true;
+        this.size++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            this.buckets[(int) (timeout.deadlineTick & this.mask)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = timeout.next = null;
+        timeout.pending = false;
+        this.size--;
+    }
+
+    /**
+     * A scheduled task; cancel it once the deadline no longer applies.
+     */
+    final class Timeout {
+        private final long deadlineTick;
+        private final Runnable task;
+        private Timeout prev;
+        private Timeout next;
+        private boolean pending;
+        // Taken out of its bucket to run in the current advance()
+        private boolean due;
+
+        private Timeout(long deadlineTick, Runnable task) {
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+
+        void cancel() {
+            if (this.pending) {
+                unlink(this);
+            }
+            this.due = false;
+        }
+
+        boolean isPending() {
+            return this.pending;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.web.labs.inside.jerry.was;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.web.labs.inside.jerry.was.toyservlet.IToy;
+
+/**
+ * Deployment - One generation of the webapp: a class loader and the servlets
+ * loaded through it.
+ * 
+ * Requests acquire the current generation for as long as they run. Once a newer
+ * generation has been swapped in, the old one is retired: it stops accepting new
+ * requests and closes its class loader when the last request using it releases it.
+ */
+class Deployment implements Closeable {
+	
+	private static final Logger LOGGER = Logger.getLogger(Deployment.class.getName());
+	
+	private final int id;
+	private final URLClassLoader classLoader;
+	private final Map<String, IToy> servlets = new ConcurrentHashMap<>();
+	
+	// One reference for being current plus one per request in flight; closed at zero
+	private final AtomicInteger references = new AtomicInteger(1);
+	
+	Deployment(int id, URLClassLoader classLoader) {
+		this.id = id;
+		this.classLoader = classLoader;
+	}
+	
+	/**
+	 * @return false if the deployment was retired and has already drained
+	 */
+	boolean tryAcquire() {
+		while (true) {
+			int count = references.get();
+			if (count == 0) {
+				return false;
+			}
+			if (references.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+	
+	void release() {
+		if (references.decrementAndGet() == 0) {
+			close();
+		}
+	}
+	
+	/**
+	 * Drop the reference held while this was the current generation; closes once
+	 * requests still running on it have finished.
+	 */
+	void retire() {
+		release();
+	}
+	
+	/**
+	 * Requests still running on this generation.
+	 */
+	int getInFlight() {
+		return Math.max(0, references.get() - 1);
+	}
+	
+	int getId() {
+		return id;
+	}
+	
+	URLClassLoader getClassLoader() {
+		return classLoader;
+	}
+	
+	Map<String, IToy> getServlets() {
+		return servlets;
+	}
+	
+	@Override
+	public void close() {
+		servlets.clear();
+		try {
+			classLoader.close();
+			LOGGER.info("Deployment generation " + id + " closed");
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Error closing class loader of generation " + id, e);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package org.web.labs.inside.jerry.was;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * DeploymentWatcher - Watches webapp directories and triggers a redeploy once
+ * they have been quiet for a moment.
+ * 
+ * A copy of several class files produces a burst of events; the watcher waits
+ * until no event has arrived for the quiet period, so one burst causes one
+ * redeploy. Directories created inside a watched tree are watched as well.
+ */
+class DeploymentWatcher implements Closeable {
+	
+	private static final Logger LOGGER = Logger.getLogger(DeploymentWatcher.class.getName());
+	
+	private static final long QUIET_PERIOD_MILLIS = 500;
+	
+	private final WatchService watchService;
+	private final Runnable onChange;
+	private final Thread thread;
+	
+	DeploymentWatcher(List<Path> roots, Runnable onChange) throws IOException {
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.onChange = onChange;
+		for (Path root : roots) {
+			if (Files.isDirectory(root)) {
+				registerTree(root);
+				LOGGER.info("Watching for redeploy: " + root);
+			}
+		}
+		this.thread = new Thread(this::watchLoop, "deployment-watcher");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+	
+	private void registerTree(Path root) throws IOException {
+		List<Path> directories;
+		try (Stream<Path> tree = Files.walk(root)) {
+			directories = tree.filter(Files::isDirectory).collect(Collectors.toList());
+		}
+		for (Path directory : directories) {
+			directory.register(watchService,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE);
+		}
+	}
+	
+	private void watchLoop() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				// Collect the rest of the burst
+				while (key != null) {
+					drain(key);
+					key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+				}
+				try {
+					onChange.run();
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Redeploy failed", e);
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Closed
+		}
+	}
+	
+	private void drain(WatchKey key) {
+		Path directory = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+				Path created = directory.resolve((Path) event.context());
+				if (Files.isDirectory(created)) {
+					try {
+						registerTree(created);
+					} catch (IOException e) {
+						LOGGER.log(Level.WARNING, "Cannot watch " + created, e);
+					}
+				}
+			}
+		}
+		key.reset();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+		thread.interrupt();
+	}
+}
@@ -0,0 +1,172 @@
+package org.web.labs.inside.jerry.was;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.web.labs.inside.jerry.was.metrics.LatencyHistogram;
+import org.web.labs.inside.jerry.was.toyservlet.IToy;
+
+/**
+ * ServletPool - Fixed set of pre-instantiated instances of one servlet class.
+ * 
+ * Each doService call borrows an instance, runs it and returns it, so
+ * instances of an ISingleThreadToy are never used by two threads at once.
+ * Idle instances sit in an array of slots claimed with compareAndSet; a
+ * borrower starts scanning at a slot derived from its thread id, so
+ * concurrent borrowers rarely collide. When every instance is busy the
+ * borrower backs off and retries until the timeout expires.
+ */
+public class ServletPool implements IToy {
+	
+	private static final long MAX_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+	
+	private final String servletName;
+	private final IToy[] instances;
+	private final AtomicReferenceArray<IToy> idle;
+	private final long timeoutNanos;
+	
+	private final LatencyHistogram waitTime = new LatencyHistogram();
+	private final LongAdder borrows = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	
+	public ServletPool(String servletName, Class<?> servletClass, int size, long timeoutMillis) throws ReflectiveOperationException {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Pool size must be positive: " + size);
+		}
+		this.servletName = servletName;
+		this.instances = new IToy[size];
+		this.idle = new AtomicReferenceArray<>(size);
+		this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		for (int i = 0; i < size; i++) {
+			this.instances[i] = (IToy) servletClass.getDeclaredConstructor().newInstance();
+			this.idle.set(i, this.instances[i]);
+		}
+	}
+	
+	/**
+	 * Run doService on an idle instance.
+	 * 
+	 * @throws PoolExhaustedException if no instance became free within the timeout
+	 */
+	@Override
+	public String doService() {
+		IToy servlet = borrow();
+		try {
+			return servlet.doService();
+		} finally {
+			release(servlet);
+		}
+	}
+	
+	private IToy borrow() {
+		IToy servlet = tryBorrow();
+		if (servlet != null) {
+			borrows.increment();
+			waitTime.recordMicros(0);
+			return servlet;
+		}
+		
+		long start = System.nanoTime();
+		long backoff = 1000;
+		while ((servlet = tryBorrow()) == null) {
+			long waited = System.nanoTime() - start;
+			if (waited >= timeoutNanos) {
+				timeouts.increment();
+				waitTime.record(waited, TimeUnit.NANOSECONDS);
+				throw new PoolExhaustedException("All " + idle.length() + " instances of " + servletName + " are busy");
+			}
+			LockSupport.parkNanos(this, Math.min(backoff, timeoutNanos - waited));
+			backoff = Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+		}
+		borrows.increment();
+		waitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		return servlet;
+	}
+	
+	private IToy tryBorrow() {
+		int size = idle.length();
+		int first = (int) (Thread.currentThread().getId() % size);
+		for (int i = 0; i < size; i++) {
+			int slot = (first + i) % size;
+			IToy servlet = idle.get(slot);
+			if (servlet != null && idle.compareAndSet(slot, servlet, null)) {
+				return servlet;
+			}
+		}
+		return null;
+	}
+	
+	private void release(IToy servlet) {
+		int size = idle.length();
+		int first = (int) (Thread.currentThread().getId() % size);
+		// Never more instances than slots, so a free slot always exists
+		while (true) {
+			for (int i = 0; i < size; i++) {
+				int slot = (first + i) % size;
+				if (idle.get(slot) == null && idle.compareAndSet(slot, null, servlet)) {
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Applied to every instance in the pool.
+	 */
+	@Override
+	public void setName(String name) {
+		for (IToy servlet : instances) {
+			servlet.setName(name);
+		}
+	}
+	
+	@Override
+	public String getName() {
+		return servletName;
+	}
+	
+	public int getSize() {
+		return idle.length();
+	}
+	
+	/**
+	 * Instances not currently serving a request.
+	 */
+	public int getIdleCount() {
+		int count = 0;
+		for (int i = 0; i < idle.length(); i++) {
+			if (idle.get(i) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	public long getBorrowCount() {
+		return borrows.sum();
+	}
+	
+	public long getTimeoutCount() {
+		return timeouts.sum();
+	}
+	
+	/**
+	 * Time spent waiting for an instance, including borrows that timed out.
+	 */
+	public LatencyHistogram getWaitTime() {
+		return waitTime;
+	}
+	
+	/**
+	 * Thrown when every instance stays busy for the whole borrow timeout.
+	 */
+	public static class PoolExhaustedException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		
+		public PoolExhaustedException(String message) {
+			super(message);
+		}
+	}
+}
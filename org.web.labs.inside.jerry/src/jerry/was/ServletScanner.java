@@ -0,0 +1,92 @@
+package org.web.labs.inside.jerry.was;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * ServletScanner - Finds candidate servlet classes on a webapp class path.
+ * 
+ * Every class directory and jar is scanned as its own task on the common
+ * fork-join pool. Only top-level classes directly in the servlet package are
+ * returned, as servlet names relative to that package; whether they implement
+ * IToy is checked when they are loaded.
+ */
+final class ServletScanner {
+	
+	private static final String CLASS_SUFFIX = ".class";
+	
+	private ServletScanner() {
+	}
+	
+	/**
+	 * @param basePackage servlet package with a trailing dot, e.g. "com.example.servlets."
+	 * @return servlet names, e.g. "ToyServlet", sorted
+	 */
+	static List<String> scan(URL[] classPath, String basePackage) {
+		String packagePath = basePackage.replace('.', '/');
+		return Arrays.stream(classPath)
+				.parallel()
+				.flatMap(url -> entries(url).stream())
+				.map(entry -> servletName(entry, packagePath))
+				.filter(name -> name != null)
+				.distinct()
+				.sorted()
+				.collect(Collectors.toList());
+	}
+	
+	/**
+	 * Class file paths under the root, '/'-separated and relative to it.
+	 */
+	private static List<String> entries(URL url) {
+		Path root;
+		try {
+			root = Paths.get(url.toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return new ArrayList<>();
+		}
+		try {
+			if (Files.isDirectory(root)) {
+				try (Stream<Path> tree = Files.walk(root)) {
+					return tree.filter(path -> path.toString().endsWith(CLASS_SUFFIX))
+							.map(path -> root.relativize(path).toString().replace('\\', '/'))
+							.collect(Collectors.toList());
+				}
+			}
+			if (Files.isRegularFile(root)) {
+				try (JarFile jar = new JarFile(root.toFile())) {
+					return jar.stream()
+							.map(JarEntry::getName)
+							.filter(name -> name.endsWith(CLASS_SUFFIX))
+							.collect(Collectors.toList());
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot scan " + root, e);
+		}
+		return new ArrayList<>();
+	}
+	
+	private static String servletName(String entry, String packagePath) {
+		if (!entry.startsWith(packagePath)) {
+			return null;
+		}
+		String name = entry.substring(packagePath.length(), entry.length() - CLASS_SUFFIX.length());
+		// Skip subpackages, nested and anonymous classes
+		if (name.isEmpty() || name.indexOf('/') >= 0 || name.indexOf('$') >= 0) {
+			return null;
+		}
+		return name;
+	}
+}
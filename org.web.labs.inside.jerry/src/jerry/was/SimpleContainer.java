@@ -4,18 +4,46 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.web.labs.inside.jerry.was.http.ExecutionMode;
 import org.web.labs.inside.jerry.was.http.SimpleHttpServer;
+import org.web.labs.inside.jerry.was.log.AccessLog;
+import org.web.labs.inside.jerry.was.toyservlet.IAsyncToy;
+import org.web.labs.inside.jerry.was.toyservlet.ISingleThreadToy;
+import org.web.labs.inside.jerry.was.toyservlet.IStreamingToy;
 import org.web.labs.inside.jerry.was.toyservlet.IToy;
+import org.web.labs.inside.jerry.was.toyservlet.IUploadToy;
+import org.web.labs.inside.jerry.was.toyservlet.ToyFile;
+import org.web.labs.inside.jerry.was.toyservlet.ToyResponse;
 
 /**
  * SimpleContainer - A lightweight servlet container implementation.
@@ -25,6 +53,15 @@ import org.web.labs.inside.jerry.was.toyservlet.IToy;
  * - Configurable context path
  * - Proper resource cleanup
  * - Thread-safe servlet management
+ * - Bounded number of concurrent servlet executions
+ * - Instance pools for servlets that are not thread-safe (ISingleThreadToy)
+ * - Asynchronous servlets (IAsyncToy) with per-request timeouts
+ * - Optional single-flight execution of concurrent identical requests
+ * - Streaming servlets (IStreamingToy) writing straight to the response
+ * - Eager startup: servlets found by a parallel class path scan are loaded
+ *   before the first request
+ * - Hot redeploy: a new class loader generation is loaded and warmed up in the
+ *   background, swapped in atomically, and the old one closed once drained
  */
 public class SimpleContainer implements Closeable {
 	
@@ -35,14 +72,31 @@ public class SimpleContainer implements Closeable {
 	private String basePackage;
 	
 	// Servlet management
-	private final Map<String, IToy> servletCache = new ConcurrentHashMap<>();
-	private URLClassLoader urlClassLoader;
-	private boolean initialized = false;
+	private volatile Deployment deployment;
+	private final Map<String, IToy> registeredServlets = new ConcurrentHashMap<>();
+	private final AtomicInteger servletGeneration = new AtomicInteger();
+	private final AtomicInteger deploymentCount = new AtomicInteger();
+	private ClassLoader parentClassLoader;
+	private DeploymentWatcher watcher;
+	private volatile boolean eagerStartup = false;
+	private volatile Map<String, Long> startupTimings = Collections.emptyMap();
+	private volatile boolean singleFlight = false;
+	private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder coalescedRequests = new LongAdder();
+	private volatile Semaphore actionPermits = new Semaphore(DEFAULT_MAX_CONCURRENT_ACTIONS);
+	private int maxConcurrentActions = DEFAULT_MAX_CONCURRENT_ACTIONS;
+	private int servletPoolSize = DEFAULT_SERVLET_POOL_SIZE;
+	private long asyncTimeoutMillis = DEFAULT_ASYNC_TIMEOUT_MILLIS;
+	private ScheduledThreadPoolExecutor timeoutTimer;
 	
 	// Default configuration
 	private static final String DEFAULT_CONTEXT_PATH = "." + File.separator + "webapps";
 	private static final String DEFAULT_BASE_PACKAGE = "org.web.labs.inside.jerry.was.toyservlet.";
 	private static final int DEFAULT_PORT = 8080;
+	private static final int DEFAULT_MAX_CONCURRENT_ACTIONS = 200;
+	private static final long ACTION_PERMIT_TIMEOUT_MILLIS = 1000;
+	private static final int DEFAULT_SERVLET_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+	private static final long DEFAULT_ASYNC_TIMEOUT_MILLIS = 30000;
 	
 	/**
 	 * Create a container with default configuration.
@@ -62,6 +116,29 @@ public class SimpleContainer implements Closeable {
 	public static void main(String[] args) {
 		int port = DEFAULT_PORT;
 		String contextPath = DEFAULT_CONTEXT_PATH;
+		Integer keepAliveTimeout = null;
+		Integer maxKeepAliveRequests = null;
+		Integer headerTimeout = null;
+		Integer bodyTimeout = null;
+		Integer minWriteRate = null;
+		ExecutionMode executionMode = ExecutionMode.PLATFORM;
+		Integer maxConcurrentActions = null;
+		Integer servletPoolSize = null;
+		Long asyncTimeout = null;
+		Integer acceptBacklog = null;
+		Integer queueCapacity = null;
+		Integer minWorkers = null;
+		Integer maxWorkers = null;
+		Integer maxQueueWait = null;
+		Integer maxConnections = null;
+		String accessLogPath = null;
+		boolean hotRedeploy = false;
+		boolean eagerStartup = false;
+		boolean singleFlight = false;
+		Long responseCacheSize = null;
+		Long maxBodySize = null;
+		String uploadDir = null;
+		List<String> cacheTtls = new ArrayList<>();
 		
 		// Parse command line arguments
 		for (int i = 0; i < args.length; i++) {
@@ -72,12 +149,122 @@ public class SimpleContainer implements Closeable {
 						port = Integer.parseInt(args[++i]);
 					}
 					break;
+				case "-m":
+				case "--mode":
+					if (i + 1 < args.length) {
+						executionMode = ExecutionMode.fromString(args[++i]);
+					}
+					break;
+				case "--max-concurrent-actions":
+					if (i + 1 < args.length) {
+						maxConcurrentActions = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--servlet-pool-size":
+					if (i + 1 < args.length) {
+						servletPoolSize = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--async-timeout":
+					if (i + 1 < args.length) {
+						asyncTimeout = Long.parseLong(args[++i]);
+					}
+					break;
 				case "-c":
 				case "--context":
 					if (i + 1 < args.length) {
 						contextPath = args[++i];
 					}
 					break;
+				case "--keep-alive-timeout":
+					if (i + 1 < args.length) {
+						keepAliveTimeout = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--max-keep-alive-requests":
+					if (i + 1 < args.length) {
+						maxKeepAliveRequests = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--header-timeout":
+					if (i + 1 < args.length) {
+						headerTimeout = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--body-timeout":
+					if (i + 1 < args.length) {
+						bodyTimeout = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--min-write-rate":
+					if (i + 1 < args.length) {
+						minWriteRate = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--accept-backlog":
+					if (i + 1 < args.length) {
+						acceptBacklog = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--queue-capacity":
+					if (i + 1 < args.length) {
+						queueCapacity = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--max-queue-wait":
+					if (i + 1 < args.length) {
+						maxQueueWait = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--min-workers":
+					if (i + 1 < args.length) {
+						minWorkers = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--max-workers":
+					if (i + 1 < args.length) {
+						maxWorkers = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--max-connections":
+					if (i + 1 < args.length) {
+						maxConnections = Integer.parseInt(args[++i]);
+					}
+					break;
+				case "--max-body-size":
+					if (i + 1 < args.length) {
+						maxBodySize = Long.parseLong(args[++i]);
+					}
+					break;
+				case "--upload-dir":
+					if (i + 1 < args.length) {
+						uploadDir = args[++i];
+					}
+					break;
+				case "--access-log":
+					if (i + 1 < args.length) {
+						accessLogPath = args[++i];
+					}
+					break;
+				case "--hot-redeploy":
+					hotRedeploy = true;
+					break;
+				case "--eager-startup":
+					eagerStartup = true;
+					break;
+				case "--single-flight":
+					singleFlight = true;
+					break;
+				case "--response-cache-size":
+					if (i + 1 < args.length) {
+						responseCacheSize = Long.parseLong(args[++i]);
+					}
+					break;
+				case "--cache-ttl":
+					if (i + 1 < args.length) {
+						cacheTtls.add(args[++i]);
+					}
+					break;
 				case "-h":
 				case "--help":
 					printHelp();
@@ -89,14 +276,84 @@ public class SimpleContainer implements Closeable {
 		LOGGER.info("Context path: " + contextPath);
 		
 		try (SimpleContainer container = new SimpleContainer(contextPath, DEFAULT_BASE_PACKAGE)) {
-			SimpleHttpServer server = new SimpleHttpServer(port);
+			if (maxConcurrentActions != null) {
+				container.setMaxConcurrentActions(maxConcurrentActions);
+			}
+			if (servletPoolSize != null) {
+				container.setServletPoolSize(servletPoolSize);
+			}
+			if (asyncTimeout != null) {
+				container.setAsyncTimeout(asyncTimeout);
+			}
+			container.setSingleFlight(singleFlight);
+			if (eagerStartup) {
+				container.initializeEagerly();
+			}
+			if (hotRedeploy) {
+				container.enableHotRedeploy();
+			}
+			SimpleHttpServer server = new SimpleHttpServer(port, executionMode);
 			server.setContainer(container);
+			if (keepAliveTimeout != null) {
+				server.setKeepAliveTimeout(keepAliveTimeout);
+			}
+			if (maxKeepAliveRequests != null) {
+				server.setMaxKeepAliveRequests(maxKeepAliveRequests);
+			}
+			if (headerTimeout != null) {
+				server.setHeaderTimeout(headerTimeout);
+			}
+			if (bodyTimeout != null) {
+				server.setBodyTimeout(bodyTimeout);
+			}
+			if (minWriteRate != null) {
+				server.setMinWriteRate(minWriteRate);
+			}
+			if (acceptBacklog != null) {
+				server.setAcceptBacklog(acceptBacklog);
+			}
+			if (queueCapacity != null) {
+				server.setQueueCapacity(queueCapacity);
+			}
+			if (minWorkers != null || maxWorkers != null) {
+				// An unset bound keeps its default unless that would cross the other one
+				int max = maxWorkers != null ? maxWorkers : Math.max(minWorkers, server.getMaxWorkers());
+				int min = minWorkers != null ? minWorkers : Math.min(maxWorkers, server.getMinWorkers());
+				server.setWorkerPoolSize(min, max);
+			}
+			if (maxQueueWait != null) {
+				server.setMaxQueueWait(maxQueueWait);
+			}
+			if (maxConnections != null) {
+				server.setMaxConnections(maxConnections);
+			}
+			if (responseCacheSize != null) {
+				server.setResponseCacheSize(responseCacheSize);
+			}
+			if (maxBodySize != null) {
+				server.setMaxRequestBodySize(maxBodySize);
+			}
+			if (uploadDir != null) {
+				server.setUploadDirectory(Paths.get(uploadDir));
+			}
+			for (String cacheTtl : cacheTtls) {
+				int eq = cacheTtl.indexOf('=');
+				if (eq <= 0) {
+					throw new IllegalArgumentException("Expected --cache-ttl <servlet>=<ms>: " + cacheTtl);
+				}
+				server.getResponseCache().setTtl(cacheTtl.substring(0, eq), Long.parseLong(cacheTtl.substring(eq + 1)));
+			}
+			AccessLog accessLog = accessLogPath != null ? new AccessLog(Paths.get(accessLogPath)) : null;
+			server.setAccessLog(accessLog);
 			
 			// Add shutdown hook for graceful shutdown
 			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
 				LOGGER.info("Shutting down SimpleContainer...");
 				server.stop();
 				try {
+					if (accessLog != null) {
+						accessLog.close();
+					}
 					container.close();
 				} catch (IOException e) {
 					LOGGER.log(Level.WARNING, "Error during shutdown", e);
@@ -117,7 +374,30 @@ public class SimpleContainer implements Closeable {
 		System.out.println();
 		System.out.println("Options:");
 		System.out.println("  -p, --port <port>      Server port (default: 8080)");
+		System.out.println("  -m, --mode <mode>      Connection threads: platform or virtual (default: platform)");
 		System.out.println("  -c, --context <path>   Context path (default: ./webapps)");
+		System.out.println("  --max-concurrent-actions <n>      Concurrent servlet executions (default: 200)");
+		System.out.println("  --servlet-pool-size <n>           Instances per single-thread servlet (default: CPU count)");
+		System.out.println("  --async-timeout <ms>              Time limit for asynchronous servlets (default: 30000)");
+		System.out.println("  --keep-alive-timeout <ms>         Idle keep-alive timeout (default: 15000)");
+		System.out.println("  --max-keep-alive-requests <n>     Requests per connection, 0 = unlimited (default: 100)");
+		System.out.println("  --header-timeout <ms>             Longest time for a request header once it starts (default: 10000)");
+		System.out.println("  --body-timeout <ms>               Longest stall between reads of a request body (default: 30000)");
+		System.out.println("  --min-write-rate <bytes/s>        Slowest rate a client may read a response at, 0 = off (default: 4096)");
+		System.out.println("  --accept-backlog <n>              Pending connections in the listen queue (default: 128)");
+		System.out.println("  --queue-capacity <n>              Connections waiting for a worker before 503 (default: 100)");
+		System.out.println("  --min-workers <n>                 Fewest platform worker threads (default: CPU count)");
+		System.out.println("  --max-workers <n>                 Most platform worker threads; above min the pool adapts (default: 200)");
+		System.out.println("  --max-queue-wait <ms>             Longest wait for a worker before 503 (default: 1000)");
+		System.out.println("  --max-connections <n>             Connections served or queued at once (default: 10000)");
+		System.out.println("  --max-body-size <bytes>           Largest request body accepted before 413 (default: 10 MB)");
+		System.out.println("  --upload-dir <dir>                Directory for temporary upload files (default: java.io.tmpdir)");
+		System.out.println("  --access-log <file>               Write an access log to the file (default: off)");
+		System.out.println("  --cache-ttl <servlet>=<ms>        Cache the servlet's responses for ms (repeatable)");
+		System.out.println("  --response-cache-size <bytes>     Byte budget of the servlet response cache (default: 16 MB)");
+		System.out.println("  --single-flight                   Share one servlet execution among concurrent identical GETs");
+		System.out.println("  --eager-startup                   Load all servlets in parallel before accepting requests");
+		System.out.println("  --hot-redeploy                    Reload the webapp when WEB-INF/classes or WEB-INF/lib change");
 		System.out.println("  -h, --help             Show this help message");
 	}
 	
@@ -125,56 +405,334 @@ public class SimpleContainer implements Closeable {
 	 * Execute a servlet action.
 	 */
 	public String action(String servletName) throws ServletException {
+		return action(servletName, null);
+	}
+	
+	/**
+	 * Execute a servlet action on an instance already resolved by the caller,
+	 * e.g. from a route table; null loads it by name.
+	 */
+	public String action(String servletName, IToy servlet) throws ServletException {
+		Semaphore permits = actionPermits;
+		if (!tryAcquire(permits)) {
+			throw new ServletUnavailableException("Too many concurrent requests for servlet: " + servletName);
+		}
+		Deployment current = acquireDeployment();
+		try {
+			return resolveServlet(current, servletName, servlet).doService();
+		} catch (ServletPool.PoolExhaustedException e) {
+			throw new ServletUnavailableException(e.getMessage());
+		} catch (Exception e) {
+			throw new ServletException("Failed to execute servlet: " + servletName, e);
+		} finally {
+			current.release();
+			permits.release();
+		}
+	}
+	
+	/**
+	 * Execute a servlet action with an uploaded form. An IUploadToy gets the fields
+	 * and files through doUpload; other servlets run doService and ignore them.
+	 */
+	public String actionUpload(String servletName, IToy servlet, Map<String, String> fields,
+			List<ToyFile> files) throws ServletException {
+		Semaphore permits = actionPermits;
+		if (!tryAcquire(permits)) {
+			throw new ServletUnavailableException("Too many concurrent requests for servlet: " + servletName);
+		}
+		Deployment current = acquireDeployment();
+		try {
+			IToy resolved = resolveServlet(current, servletName, servlet);
+			if (resolved instanceof IUploadToy) {
+				return ((IUploadToy) resolved).doUpload(fields, files);
+			}
+			return resolved.doService();
+		} catch (ServletPool.PoolExhaustedException e) {
+			throw new ServletUnavailableException(e.getMessage());
+		} catch (Exception e) {
+			throw new ServletException("Failed to execute servlet: " + servletName, e);
+		} finally {
+			current.release();
+			permits.release();
+		}
+	}
+	
+	/**
+	 * Execute a servlet action, letting an IStreamingToy write its output to the
+	 * response while it runs. Other servlets run as in action() and their output
+	 * is written in one piece.
+	 * 
+	 * Failures writing the response are reported as ServletException as well;
+	 * check response.isCommitted() to see whether anything reached the client.
+	 */
+	public void actionStreaming(String servletName, IToy servlet, ToyResponse response) throws ServletException {
+		Deployment current = acquireDeployment();
+		try {
+			servlet = resolveServlet(current, servletName, servlet);
+		} catch (Exception e) {
+			current.release();
+			throw new ServletException("Failed to execute servlet: " + servletName, e);
+		}
+		
+		if (!(servlet instanceof IStreamingToy)) {
+			current.release();
+			String output = action(servletName, servlet);
+			try {
+				Writer writer = response.getWriter();
+				writer.write(output);
+				writer.flush();
+			} catch (IOException e) {
+				throw new ServletException("Failed to write output of servlet: " + servletName, e);
+			}
+			return;
+		}
+		
+		Semaphore permits = actionPermits;
+		try {
+			if (!tryAcquire(permits)) {
+				throw new ServletUnavailableException("Too many concurrent requests for servlet: " + servletName);
+			}
+		} catch (ServletException e) {
+			current.release();
+			throw e;
+		}
 		try {
-			ensureInitialized();
-			IToy servlet = getOrLoadServlet(servletName);
-			return servlet.doService();
+			((IStreamingToy) servlet).doService(response);
 		} catch (Exception e) {
 			throw new ServletException("Failed to execute servlet: " + servletName, e);
+		} finally {
+			current.release();
+			permits.release();
 		}
 	}
 	
+	/**
+	 * Execute a servlet action without waiting, coalescing concurrent identical requests.
+	 * 
+	 * With single-flight enabled, a request whose key matches an execution still in
+	 * progress attaches to it and completes with the same output or failure instead
+	 * of running the servlet again. The key is dropped before the result is handed
+	 * out, so nothing is reused once the execution has finished.
+	 * 
+	 * @param flightKey identifies identical requests, e.g. servlet name and query; null never coalesces
+	 */
+	public CompletionStage<String> actionAsync(String servletName, IToy servlet, String flightKey) {
+		if (!singleFlight || flightKey == null) {
+			return actionAsync(servletName, servlet);
+		}
+		CompletableFuture<String> flight = new CompletableFuture<>();
+		CompletableFuture<String> existing = inFlight.putIfAbsent(flightKey, flight);
+		if (existing != null) {
+			coalescedRequests.increment();
+			return existing;
+		}
+		
+		CompletionStage<String> execution;
+		try {
+			execution = actionAsync(servletName, servlet);
+		} catch (RuntimeException e) {
+			inFlight.remove(flightKey, flight);
+			flight.completeExceptionally(e);
+			return flight;
+		}
+		execution.whenComplete((output, error) -> {
+			inFlight.remove(flightKey, flight);
+			if (error == null) {
+				flight.complete(output);
+			} else {
+				flight.completeExceptionally(error);
+			}
+		});
+		return flight;
+	}
+	
+	/**
+	 * Execute a servlet action without waiting for an IAsyncToy to finish.
+	 * 
+	 * The returned stage completes with the servlet's output, or exceptionally with
+	 * ServletUnavailableException when the concurrency limit is reached, TimeoutException
+	 * when the servlet takes longer than the async timeout, or ServletException.
+	 * Servlets that are not IAsyncToy run in place, exactly as in action().
+	 */
+	public CompletionStage<String> actionAsync(String servletName, IToy servlet) {
+		CompletableFuture<String> result = new CompletableFuture<>();
+		Deployment current = acquireDeployment();
+		// The generation stays in use until the response is ready
+		result.whenComplete((output, error) -> current.release());
+		try {
+			servlet = resolveServlet(current, servletName, servlet);
+		} catch (Exception e) {
+			result.completeExceptionally(new ServletException("Failed to execute servlet: " + servletName, e));
+			return result;
+		}
+		
+		if (!(servlet instanceof IAsyncToy)) {
+			try {
+				result.complete(action(servletName, servlet));
+			} catch (ServletException e) {
+				result.completeExceptionally(e);
+			}
+			return result;
+		}
+		
+		// The permit is held until the response is ready, not just while doServiceAsync runs
+		Semaphore permits = actionPermits;
+		if (!permits.tryAcquire()) {
+			result.completeExceptionally(new ServletUnavailableException("Too many concurrent requests for servlet: " + servletName));
+			return result;
+		}
+		result.whenComplete((output, error) -> permits.release());
+		
+		CompletionStage<String> stage;
+		try {
+			stage = ((IAsyncToy) servlet).doServiceAsync();
+		} catch (Exception e) {
+			result.completeExceptionally(new ServletException("Failed to execute servlet: " + servletName, e));
+			return result;
+		}
+		
+		ScheduledFuture<?> timeout = timeoutTimer().schedule(
+				() -> result.completeExceptionally(new TimeoutException("Servlet " + servletName
+						+ " did not respond within " + asyncTimeoutMillis + " ms")),
+				asyncTimeoutMillis, TimeUnit.MILLISECONDS);
+		stage.whenComplete((output, error) -> {
+			timeout.cancel(false);
+			if (error == null) {
+				result.complete(output);
+			} else {
+				result.completeExceptionally(new ServletException("Failed to execute servlet: " + servletName, error));
+			}
+		});
+		return result;
+	}
+	
+	private synchronized ScheduledThreadPoolExecutor timeoutTimer() {
+		if (timeoutTimer == null) {
+			timeoutTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+				Thread thread = new Thread(runnable, "servlet-timeout");
+				thread.setDaemon(true);
+				return thread;
+			});
+			// Most timeouts are cancelled; drop them from the queue right away
+			timeoutTimer.setRemoveOnCancelPolicy(true);
+		}
+		return timeoutTimer;
+	}
+	
+	private boolean tryAcquire(Semaphore permits) throws ServletException {
+		try {
+			return permits.tryAcquire(ACTION_PERMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServletException("Interrupted while waiting for servlet execution");
+		}
+	}
+	
+	/**
+	 * The servlet instance of the given generation: the caller's instance if it
+	 * belongs to that generation (e.g. taken from a route table), otherwise the
+	 * cached or newly loaded one.
+	 */
+	private IToy resolveServlet(Deployment current, String servletName, IToy servlet) throws Exception {
+		IToy cached = current.getServlets().get(servletName);
+		if (cached != null && (servlet == null || servlet == cached)) {
+			return cached;
+		}
+		return getOrLoadServlet(current, servletName);
+	}
+	
 	/**
 	 * Get servlet from cache or load it.
 	 */
-	private IToy getOrLoadServlet(String servletName) throws Exception {
-		return servletCache.computeIfAbsent(servletName, name -> {
+	private IToy getOrLoadServlet(Deployment current, String servletName) throws Exception {
+		IToy servlet = current.getServlets().get(servletName);
+		if (servlet != null) {
+			return servlet;
+		}
+		boolean[] installed = new boolean[1];
+		servlet = current.getServlets().computeIfAbsent(servletName, name -> {
 			try {
-				return loadServlet(name);
+				IToy loaded = loadServlet(current.getClassLoader(), name);
+				installed[0] = true;
+				return loaded;
 			} catch (Exception e) {
 				throw new RuntimeException("Failed to load servlet: " + name, e);
 			}
 		});
+		// A thread that lost the load race leaves the route tables alone
+		if (installed[0]) {
+			servletGeneration.incrementAndGet();
+		}
+		return servlet;
 	}
 	
 	/**
 	 * Load a servlet class dynamically.
 	 */
-	private IToy loadServlet(String servletName) throws Exception {
+	private IToy loadServlet(ClassLoader classLoader, String servletName) throws Exception {
 		String className = basePackage + servletName;
 		LOGGER.info("Loading servlet: " + className);
 		
-		Class<?> servletClass = urlClassLoader.loadClass(className);
+		Class<?> servletClass = classLoader.loadClass(className);
 		
 		if (!IToy.class.isAssignableFrom(servletClass)) {
 			throw new ServletException("Class " + className + " does not implement IToy interface");
 		}
+		return instantiateServlet(servletName, servletClass);
+	}
+	
+	private IToy instantiateServlet(String servletName, Class<?> servletClass) throws Exception {
+		if (ISingleThreadToy.class.isAssignableFrom(servletClass)) {
+			ServletPool pool = new ServletPool(servletName, servletClass, servletPoolSize, ACTION_PERMIT_TIMEOUT_MILLIS);
+			LOGGER.info("Servlet loaded successfully: " + servletName + " (pool of " + servletPoolSize + ")");
+			return pool;
+		}
 		
 		IToy instance = (IToy) servletClass.newInstance();
 		LOGGER.info("Servlet loaded successfully: " + servletName);
 		return instance;
 	}
 	
+	/**
+	 * Take a reference on the current generation; release it when the request is done.
+	 */
+	private Deployment acquireDeployment() {
+		while (true) {
+			Deployment current = ensureInitialized();
+			if (current.tryAcquire()) {
+				return current;
+			}
+			// Retired and drained after the read; the next read sees its successor
+		}
+	}
+	
 	/**
 	 * Initialize the container (lazy initialization).
 	 */
-	private synchronized void ensureInitialized() {
-		if (initialized) {
-			return;
+	private Deployment ensureInitialized() {
+		Deployment current = deployment;
+		if (current != null) {
+			return current;
 		}
-		
-		LOGGER.info("Initializing container with context: " + contextPath);
-		
+		synchronized (this) {
+			if (deployment == null) {
+				LOGGER.info("Initializing container with context: " + contextPath);
+				if (parentClassLoader == null) {
+					parentClassLoader = Thread.currentThread().getContextClassLoader();
+				}
+				deployment = createDeployment();
+				Thread.currentThread().setContextClassLoader(deployment.getClassLoader());
+				servletGeneration.incrementAndGet();
+			}
+			return deployment;
+		}
+	}
+	
+	/**
+	 * Build a class loader over the current contents of WEB-INF and seed it with
+	 * the servlets registered directly.
+	 */
+	private Deployment createDeployment() {
 		List<URL> urlList = new ArrayList<>();
 		
 		// Add classes directory
@@ -185,13 +743,209 @@ public class SimpleContainer implements Closeable {
 		File libDir = new File(contextPath, "WEB-INF" + File.separator + "lib");
 		addJarsToClasspath(libDir, urlList);
 		
-		// Create URLClassLoader
+		// Create URLClassLoader; every generation has the same parent, never the previous generation
 		URL[] urls = urlList.toArray(new URL[0]);
-		urlClassLoader = new URLClassLoader(urls, Thread.currentThread().getContextClassLoader());
-		Thread.currentThread().setContextClassLoader(urlClassLoader);
+		Deployment created = new Deployment(deploymentCount.incrementAndGet(), new URLClassLoader(urls, parentClassLoader));
+		created.getServlets().putAll(registeredServlets);
+		
+		LOGGER.info("Deployment generation " + created.getId() + " created with " + urls.length + " classpath entries");
+		return created;
+	}
+	
+	/**
+	 * Load a new generation of the webapp and swap it in without pausing requests.
+	 * 
+	 * Every servlet loaded in the current generation is loaded and instantiated in the
+	 * new one first, so no request pays for a cold load after the swap. Requests already
+	 * running finish on the old generation, which is closed once they have drained.
+	 * If any servlet fails to load, the current generation stays in place.
+	 * 
+	 * @return whether the new generation was swapped in
+	 */
+	public boolean redeploy() {
+		synchronized (this) {
+			Deployment old = deployment;
+			if (old == null) {
+				ensureInitialized();
+				return true;
+			}
+			
+			long start = System.nanoTime();
+			Deployment next = createDeployment();
+			Set<String> required = new HashSet<>(old.getServlets().keySet());
+			required.removeAll(registeredServlets.keySet());
+			Set<String> names = new TreeSet<>(required);
+			if (eagerStartup) {
+				names.addAll(ServletScanner.scan(next.getClassLoader().getURLs(), basePackage));
+			}
+			try {
+				loadServlets(next, names, required, null);
+			} catch (ServletException e) {
+				LOGGER.log(Level.WARNING, "Redeploy failed, keeping generation " + old.getId(), e);
+				next.close();
+				return false;
+			}
+			
+			deployment = next;
+			servletGeneration.incrementAndGet();
+			int inFlight = old.getInFlight();
+			old.retire();
+			LOGGER.info("Deployment generation " + next.getId() + " live after "
+					+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms; draining "
+					+ inFlight + " requests from generation " + old.getId());
+			return true;
+		}
+	}
+	
+	/**
+	 * Create the first generation and load every servlet in it before any request
+	 * arrives, instead of on first use.
+	 * 
+	 * WEB-INF/classes and each jar in WEB-INF/lib are scanned in parallel for classes
+	 * in the servlet package; the IToy implementations among them are loaded and then
+	 * instantiated on the fork-join pool. Requests afterwards only read the published
+	 * generation. Time spent in each phase is logged and kept in getStartupTimings().
+	 * Later redeploys scan again, so servlets added meanwhile are picked up.
+	 */
+	public synchronized void initializeEagerly() throws ServletException {
+		eagerStartup = true;
+		if (deployment != null) {
+			redeploy();
+			return;
+		}
+		
+		Map<String, Long> timings = new LinkedHashMap<>();
+		long start = System.nanoTime();
+		LOGGER.info("Initializing container eagerly with context: " + contextPath);
+		if (parentClassLoader == null) {
+			parentClassLoader = Thread.currentThread().getContextClassLoader();
+		}
+		Deployment created = createDeployment();
+		long phaseStart = System.nanoTime();
+		timings.put("classpath", phaseStart - start);
+		
+		List<String> names = ServletScanner.scan(created.getClassLoader().getURLs(), basePackage);
+		timings.put("scan", System.nanoTime() - phaseStart);
+		
+		loadServlets(created, names, Collections.emptySet(), timings);
+		
+		deployment = created;
+		servletGeneration.incrementAndGet();
+		timings.put("total", System.nanoTime() - start);
+		startupTimings = Collections.unmodifiableMap(timings);
+		
+		StringBuilder report = new StringBuilder("Eager startup of ")
+				.append(created.getServlets().size()).append(" servlets:");
+		for (Map.Entry<String, Long> phase : timings.entrySet()) {
+			report.append(' ').append(phase.getKey()).append('=')
+				.append(TimeUnit.NANOSECONDS.toMillis(phase.getValue())).append("ms");
+		}
+		LOGGER.info(report.toString());
+	}
+	
+	/**
+	 * Load the named classes and instantiate the servlets among them into the
+	 * deployment, both phases in parallel on the common fork-join pool.
+	 * 
+	 * @param required names that must load; any other name that is not a concrete
+	 *                 IToy is skipped, and one that fails to instantiate is logged
+	 * @param timings  receives the duration of the "load" and "instantiate" phases, may be null
+	 * @throws ServletException if a required servlet failed
+	 */
+	private void loadServlets(Deployment target, Collection<String> names, Set<String> required,
+			Map<String, Long> timings) throws ServletException {
+		Map<String, Exception> failures = new ConcurrentHashMap<>();
+		long start = System.nanoTime();
+		
+		Map<String, Class<?>> classes = new ConcurrentHashMap<>();
+		names.parallelStream().forEach(name -> {
+			try {
+				Class<?> servletClass = target.getClassLoader().loadClass(basePackage + name);
+				if (isServletClass(servletClass)) {
+					classes.put(name, servletClass);
+				} else if (required.contains(name)) {
+					failures.put(name, new ServletException("Class " + servletClass.getName() + " is not a concrete IToy"));
+				}
+			} catch (ClassNotFoundException | LinkageError e) {
+				if (required.contains(name)) {
+					failures.put(name, new ServletException("Failed to load servlet: " + name, e));
+				} else {
+					LOGGER.log(Level.FINE, "Skipping unloadable class " + name, e);
+				}
+			}
+		});
+		long loaded = System.nanoTime();
 		
-		initialized = true;
-		LOGGER.info("Container initialized with " + urls.length + " classpath entries");
+		classes.entrySet().parallelStream().forEach(entry -> {
+			try {
+				target.getServlets().put(entry.getKey(), instantiateServlet(entry.getKey(), entry.getValue()));
+			} catch (Exception e) {
+				if (required.contains(entry.getKey())) {
+					failures.put(entry.getKey(), e);
+				} else {
+					LOGGER.log(Level.WARNING, "Failed to instantiate servlet: " + entry.getKey(), e);
+				}
+			}
+		});
+		
+		if (timings != null) {
+			timings.put("load", loaded - start);
+			timings.put("instantiate", System.nanoTime() - loaded);
+		}
+		if (!failures.isEmpty()) {
+			Map.Entry<String, Exception> failure = failures.entrySet().iterator().next();
+			throw new ServletException("Failed to load servlet: " + failure.getKey(), failure.getValue());
+		}
+	}
+	
+	private static boolean isServletClass(Class<?> type) {
+		int modifiers = type.getModifiers();
+		return IToy.class.isAssignableFrom(type) && !type.isInterface()
+				&& Modifier.isPublic(modifiers) && !Modifier.isAbstract(modifiers);
+	}
+	
+	/**
+	 * Duration of each eager startup phase in nanoseconds, in phase order;
+	 * empty when the container started lazily.
+	 */
+	public Map<String, Long> getStartupTimings() {
+		return startupTimings;
+	}
+	
+	/**
+	 * Let concurrent identical requests share one servlet execution; see
+	 * actionAsync(String, IToy, String).
+	 */
+	public void setSingleFlight(boolean singleFlight) {
+		this.singleFlight = singleFlight;
+	}
+	
+	public boolean isSingleFlight() {
+		return singleFlight;
+	}
+	
+	/**
+	 * Requests answered by attaching to an identical execution already in progress.
+	 */
+	public long getCoalescedCount() {
+		return coalescedRequests.sum();
+	}
+	
+	public boolean isEagerStartup() {
+		return eagerStartup;
+	}
+	
+	/**
+	 * Redeploy automatically whenever WEB-INF/classes or WEB-INF/lib change.
+	 */
+	public synchronized void enableHotRedeploy() throws IOException {
+		if (watcher != null) {
+			return;
+		}
+		List<Path> roots = new ArrayList<>();
+		roots.add(Paths.get(contextPath, "WEB-INF", "classes"));
+		roots.add(Paths.get(contextPath, "WEB-INF", "lib"));
+		watcher = new DeploymentWatcher(roots, this::redeploy);
 	}
 	
 	private void addDirectoryToClasspath(File directory, List<URL> urlList) {
@@ -228,42 +982,113 @@ public class SimpleContainer implements Closeable {
 	/**
 	 * Register a servlet instance directly.
 	 */
-	public void registerServlet(String name, IToy servlet) {
-		servletCache.put(name, servlet);
+	public synchronized void registerServlet(String name, IToy servlet) {
+		registeredServlets.put(name, servlet);
+		Deployment current = deployment;
+		if (current != null) {
+			current.getServlets().put(name, servlet);
+		}
+		servletGeneration.incrementAndGet();
 		LOGGER.info("Registered servlet: " + name);
 	}
 	
 	/**
 	 * Unregister a servlet.
 	 */
-	public void unregisterServlet(String name) {
-		servletCache.remove(name);
+	public synchronized void unregisterServlet(String name) {
+		registeredServlets.remove(name);
+		Deployment current = deployment;
+		if (current != null) {
+			current.getServlets().remove(name);
+		}
+		servletGeneration.incrementAndGet();
 		LOGGER.info("Unregistered servlet: " + name);
 	}
 	
+	/**
+	 * @return the loaded or registered servlet with this name, or null
+	 */
+	public IToy getServlet(String name) {
+		Deployment current = deployment;
+		return current != null ? current.getServlets().get(name) : registeredServlets.get(name);
+	}
+	
+	/**
+	 * Number of the live deployment generation, 0 before the first one exists;
+	 * changes on every redeploy.
+	 */
+	public int getDeploymentId() {
+		Deployment current = deployment;
+		return current != null ? current.getId() : 0;
+	}
+	
+	/**
+	 * Incremented whenever the set of servlet instances changes, so callers
+	 * holding instances (e.g. a compiled route table) know to refresh.
+	 */
+	public int getServletGeneration() {
+		return servletGeneration.get();
+	}
+	
+	/**
+	 * Instance pools of the loaded ISingleThreadToy servlets, by servlet name.
+	 */
+	public Map<String, ServletPool> getServletPools() {
+		Map<String, ServletPool> pools = new TreeMap<>();
+		Deployment current = deployment;
+		if (current == null) {
+			return pools;
+		}
+		for (Map.Entry<String, IToy> entry : current.getServlets().entrySet()) {
+			if (entry.getValue() instanceof ServletPool) {
+				pools.put(entry.getKey(), (ServletPool) entry.getValue());
+			}
+		}
+		return pools;
+	}
+	
 	/**
 	 * Get list of registered servlets.
 	 */
 	public List<String> getRegisteredServlets() {
-		return new ArrayList<>(servletCache.keySet());
+		Deployment current = deployment;
+		return new ArrayList<>(current != null ? current.getServlets().keySet() : registeredServlets.keySet());
 	}
 	
 	/**
 	 * Clear servlet cache (force reload on next request).
 	 */
 	public void clearCache() {
-		servletCache.clear();
+		registeredServlets.clear();
+		Deployment current = deployment;
+		if (current != null) {
+			current.getServlets().clear();
+		}
+		servletGeneration.incrementAndGet();
 		LOGGER.info("Servlet cache cleared");
 	}
 	
 	@Override
 	public void close() throws IOException {
 		LOGGER.info("Closing container...");
-		servletCache.clear();
-		if (urlClassLoader != null) {
-			urlClassLoader.close();
+		synchronized (this) {
+			if (timeoutTimer != null) {
+				timeoutTimer.shutdownNow();
+				timeoutTimer = null;
+			}
 		}
-		initialized = false;
+		synchronized (this) {
+			if (watcher != null) {
+				watcher.close();
+				watcher = null;
+			}
+			if (deployment != null) {
+				deployment.retire();
+				deployment = null;
+			}
+		}
+		registeredServlets.clear();
+		servletGeneration.incrementAndGet();
 		LOGGER.info("Container closed");
 	}
 	
@@ -276,6 +1101,42 @@ public class SimpleContainer implements Closeable {
 		this.contextPath = contextPath;
 	}
 	
+	public int getMaxConcurrentActions() {
+		return maxConcurrentActions;
+	}
+	
+	/**
+	 * Limit how many servlet executions may run at once; callers over
+	 * the limit wait briefly and then fail with ServletUnavailableException.
+	 */
+	public void setMaxConcurrentActions(int maxConcurrentActions) {
+		this.maxConcurrentActions = maxConcurrentActions;
+		this.actionPermits = new Semaphore(maxConcurrentActions);
+	}
+	
+	public int getServletPoolSize() {
+		return servletPoolSize;
+	}
+	
+	/**
+	 * Set how many instances are created for each ISingleThreadToy servlet
+	 * loaded from now on.
+	 */
+	public void setServletPoolSize(int servletPoolSize) {
+		this.servletPoolSize = servletPoolSize;
+	}
+	
+	public long getAsyncTimeout() {
+		return asyncTimeoutMillis;
+	}
+	
+	/**
+	 * Set how long an IAsyncToy may take before its request fails with a timeout.
+	 */
+	public void setAsyncTimeout(long timeoutMillis) {
+		this.asyncTimeoutMillis = timeoutMillis;
+	}
+	
 	public String getBasePackage() {
 		return basePackage;
 	}
@@ -298,4 +1159,15 @@ public class SimpleContainer implements Closeable {
 			super(message, cause);
 		}
 	}
+	
+	/**
+	 * Thrown when a servlet execution is rejected by the concurrency limit.
+	 */
+	public static class ServletUnavailableException extends ServletException {
+		private static final long serialVersionUID = 1L;
+		
+		public ServletUnavailableException(String message) {
+			super(message);
+		}
+	}
 }
@@ -0,0 +1,274 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.web.labs.inside.jerry.was.metrics.LatencyHistogram;
+
+/**
+ * AdaptiveThreadPool - Platform worker pool that resizes itself between bounds.
+ *
+ * Every task is stamped when queued. A controller thread looks at each interval's
+ * queueing delay (the mean wait of started tasks, or the age of the oldest queued
+ * one if larger) and throughput, and sets the worker count like a gradient
+ * concurrency limit. Throughput is completed tasks unless a work counter is set,
+ * e.g. requests served when each task is a whole keep-alive connection:
+ * <ul>
+ * <li>delay over the target: grow by size / gradient, where gradient =
+ *     target / delay clamped to [0.5, 1], so at most doubling per interval;</li>
+ * <li>a growth that bought no throughput means the workers are not the
+ *     bottleneck (e.g. CPU-bound servlets): half of it is undone and the size
+ *     is held for a cooldown;</li>
+ * <li>delay under the target: shrink toward the peak busy count plus
+ *     sqrt(peak) headroom, a quarter of the gap per interval.</li>
+ * </ul>
+ * Connection handlers block on keep-alive reads, so queueing delay usually
+ * means connections outnumber workers rather than that the CPU is busy.
+ */
+public class AdaptiveThreadPool extends ThreadPoolExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveThreadPool.class.getName());
+
+    private static final long DEFAULT_INTERVAL_MILLIS = 500;
+    private static final long DEFAULT_TARGET_WAIT_MILLIS = 10;
+    private static final double MIN_GRADIENT = 0.5;
+    // Throughput must rise by this fraction for a growth to count as useful
+    private static final double THROUGHPUT_TOLERANCE = 0.05;
+    private static final int COOLDOWN_INTERVALS = 10;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long targetWaitNanos;
+    private final long intervalNanos;
+    private final ScheduledThreadPoolExecutor controller;
+
+    // Current interval
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private volatile LongSupplier work = this.completed::sum;
+    private final AtomicInteger busy = new AtomicInteger();
+    private final AtomicInteger peakBusy = new AtomicInteger();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+
+    // Controller state, controller thread only
+    private long lastWork = 0;
+    private double lastThroughput = 0;
+    private int lastGrowth = 0;
+    private int cooldown = 0;
+    private int ceiling;
+
+    private volatile long lastWaitNanos = 0;
+    private volatile double throughput = 0;
+    private final LongAdder grows = new LongAdder();
+    private final LongAdder shrinks = new LongAdder();
+    private final LongAdder reverts = new LongAdder();
+
+    public AdaptiveThreadPool(int minSize, int maxSize, int queueCapacity) {
+        this(minSize, maxSize, queueCapacity, DEFAULT_TARGET_WAIT_MILLIS, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param targetWaitMillis queueing delay above which the pool grows
+     * @param intervalMillis how often the size is reconsidered
+     */
+    public AdaptiveThreadPool(int minSize, int maxSize, int queueCapacity, long targetWaitMillis, long intervalMillis) {
+        super(minSize, minSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity));
+        if (minSize <= 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("Invalid pool bounds: " + minSize + ".." + maxSize);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.ceiling = maxSize;
+        this.targetWaitNanos = TimeUnit.MILLISECONDS.toNanos(targetWaitMillis);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.controller = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "pool-sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.controller.scheduleWithFixedDelay(this::adjust, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Measure throughput by a cumulative count of work done instead of completed tasks.
+     */
+    public void setWorkCounter(LongSupplier work) {
+        this.work = work;
+        this.lastWork = work.getAsLong();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new Queued(command));
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        if (task instanceof Queued) {
+            long waited = System.nanoTime() - ((Queued) task).queuedAt;
+            this.waitNanos.add(waited);
+            this.started.increment();
+            this.queueWait.record(waited, TimeUnit.NANOSECONDS);
+        }
+        int now = this.busy.incrementAndGet();
+        this.peakBusy.accumulateAndGet(now, Math::max);
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable error) {
+        this.busy.decrementAndGet();
+        this.completed.increment();
+    }
+
+    @Override
+    protected void terminated() {
+        this.controller.shutdownNow();
+    }
+
+    /**
+     * One control step, run on the controller thread. A failure is logged
+     * rather than thrown: the scheduler would cancel every later step.
+     */
+    void adjust() {
+        try {
+            this.step();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Worker pool adjustment failed", e);
+        }
+    }
+
+    /**
+     * Measure the interval and pick the next size.
+     */
+    private void step() {
+        if (this.isShutdown()) {
+            return;
+        }
+        long count = this.started.sumThenReset();
+        long totalWait = this.waitNanos.sumThenReset();
+        long wait = count > 0 ? totalWait / count : 0;
+        Queued oldest = (Queued) this.getQueue().peek();
+        if (oldest != null) {
+            wait = Math.max(wait, System.nanoTime() - oldest.queuedAt);
+        }
+        long done = this.work.getAsLong();
+        double rate = (done - this.lastWork) * 1e9 / this.intervalNanos;
+        this.lastWork = done;
+        int peak = this.peakBusy.getAndSet(this.busy.get());
+        this.lastWaitNanos = wait;
+        this.throughput = rate;
+
+        int size = this.getCorePoolSize();
+        int next = size;
+        if (this.cooldown > 0 && --this.cooldown == 0) {
+            this.ceiling = this.maxSize;
+        }
+
+        if (wait > this.targetWaitNanos) {
+            if (this.lastGrowth > 0 && rate <= this.lastThroughput * (1 + THROUGHPUT_TOLERANCE)) {
+                // More workers did not finish more work: give half back and stop growing for a while
+                next = size - (this.lastGrowth + 1) / 2;
+                this.ceiling = Math.max(this.minSize, next);
+                this.cooldown = COOLDOWN_INTERVALS;
+                this.reverts.increment();
+            } else {
+                double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, (double) this.targetWaitNanos / wait));
+                next = Math.min(this.ceiling, (int) Math.ceil(size / gradient));
+            }
+        } else {
+            int needed = peak + (int) Math.ceil(Math.sqrt(peak));
+            if (needed < size) {
+                next = size - Math.max(1, (size - needed) / 4);
+            }
+        }
+
+        next = Math.max(this.minSize, Math.min(this.maxSize, next));
+        this.lastGrowth = next > size ? next - size : 0;
+        this.lastThroughput = rate;
+        if (next != size) {
+            this.resize(next);
+            (next > size ? this.grows : this.shrinks).increment();
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Worker pool " + size + " -> " + next + " (queue wait "
+                        + TimeUnit.NANOSECONDS.toMicros(wait) + " us, " + Math.round(rate) + " tasks/s)");
+            }
+        }
+    }
+
+    private void resize(int size) {
+        // Core and maximum move together; the order keeps core <= maximum at every step
+        if (size > this.getMaximumPoolSize()) {
+            this.setMaximumPoolSize(size);
+            this.setCorePoolSize(size);
+        } else {
+            this.setCorePoolSize(size);
+            this.setMaximumPoolSize(size);
+        }
+    }
+
+    public int getMinSize() {
+        return this.minSize;
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Mean queueing delay measured in the last interval.
+     */
+    public long getLastQueueWaitNanos() {
+        return this.lastWaitNanos;
+    }
+
+    /**
+     * Work done per second in the last interval.
+     */
+    public double getThroughput() {
+        return this.throughput;
+    }
+
+    public LatencyHistogram getQueueWait() {
+        return this.queueWait;
+    }
+
+    public long getGrowCount() {
+        return this.grows.sum();
+    }
+
+    public long getShrinkCount() {
+        return this.shrinks.sum();
+    }
+
+    /**
+     * Growths undone because they did not raise throughput.
+     */
+    public long getRevertCount() {
+        return this.reverts.sum();
+    }
+
+    /**
+     * Task with the time it was handed to the pool.
+     */
+    private static final class Queued implements Runnable {
+        private final Runnable task;
+        private final long queuedAt = System.nanoTime();
+
+        Queued(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            this.task.run();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request header cannot be used, e.g. a malformed Content-Length.
+ */
+public class BadRequestException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,93 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ByteRange - One satisfiable range from a "Range: bytes=..." request header.
+ */
+public final class ByteRange {
+    
+    /** More ranges than this are treated as abuse and the full entity is sent. */
+    private static final int MAX_RANGES = 16;
+    
+    private final long start;
+    private final long end;
+    
+    ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+    
+    /**
+     * Parse a Range header against an entity of the given length.
+     * 
+     * @return the satisfiable ranges (empty when none can be satisfied),
+     *         or null when the header is malformed and should be ignored
+     */
+    public static List<ByteRange> parse(String header, long length) {
+        String value = header.trim();
+        if (!value.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+        
+        String[] specs = value.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            String s = spec.trim();
+            int dash = s.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                if (dash == 0) {
+                    // Suffix range: last N bytes
+                    long suffix = Long.parseLong(s.substring(1));
+                    if (suffix > 0 && length > 0) {
+                        ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+                    }
+                } else {
+                    long first = Long.parseLong(s.substring(0, dash));
+                    long last = Long.MAX_VALUE;
+                    if (dash < s.length() - 1) {
+                        last = Long.parseLong(s.substring(dash + 1));
+                        if (last < first) {
+                            return null;
+                        }
+                    }
+                    if (first < length) {
+                        ranges.add(new ByteRange(first, Math.min(last, length - 1)));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges.isEmpty() ? Collections.<ByteRange>emptyList() : ranges;
+    }
+    
+    public long getStart() {
+        return this.start;
+    }
+    
+    /** Inclusive last byte offset. */
+    public long getEnd() {
+        return this.end;
+    }
+    
+    public long getLength() {
+        return this.end - this.start + 1;
+    }
+    
+    /**
+     * Content-Range value, e.g. "bytes 0-499/1234".
+     */
+    public String toContentRange(long totalLength) {
+        return "bytes " + this.start + "-" + this.end + "/" + totalLength;
+    }
+}
@@ -0,0 +1,119 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.web.labs.inside.jerry.was.status.Constant.*;
+
+/**
+ * ByteRangeBody - 206 body for one or more ranges of a static file.
+ * 
+ * A single range is sent as is; several ranges are framed as multipart/byteranges.
+ * Data comes from a slice of the cached buffer when the file is cached, otherwise
+ * from FileChannel offsets (transferTo or a mapped region), so only the requested
+ * bytes are ever read.
+ */
+public class ByteRangeBody implements ResponseBody {
+    
+    private final StaticContentCache.Entry entry;
+    private final List<ByteRange> ranges;
+    private final String boundary;
+    private final byte[][] partHeaders;
+    private final byte[] closingBoundary;
+    private final long contentLength;
+    
+    public ByteRangeBody(StaticContentCache.Entry entry, List<ByteRange> ranges) {
+        this.entry = entry;
+        this.ranges = ranges;
+        
+        if (ranges.size() == 1) {
+            this.boundary = null;
+            this.partHeaders = null;
+            this.closingBoundary = null;
+            this.contentLength = ranges.get(0).getLength();
+            return;
+        }
+        
+        this.boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        this.partHeaders = new byte[ranges.size()][];
+        long length = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            String partHeader = (i > 0 ? CRLF : "") + "--" + this.boundary + CRLF
+                    + "Content-Type: " + entry.getContentType() + CRLF
+                    + "Content-Range: " + range.toContentRange(entry.getLength()) + CRLF
+                    + CRLF;
+            this.partHeaders[i] = partHeader.getBytes(StandardCharsets.US_ASCII);
+            length += this.partHeaders[i].length + range.getLength();
+        }
+        this.closingBoundary = (CRLF + "--" + this.boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        this.contentLength = length + this.closingBoundary.length;
+    }
+    
+    public boolean isMultipart() {
+        return this.boundary != null;
+    }
+    
+    /**
+     * Content-Type of the 206 response: the file's type, or multipart/byteranges.
+     */
+    public String getContentType() {
+        return this.isMultipart()
+                ? "multipart/byteranges; boundary=" + this.boundary
+                : this.entry.getContentType().toString();
+    }
+    
+    /**
+     * Content-Range header for a single-range response.
+     */
+    public String getContentRange() {
+        return this.ranges.get(0).toContentRange(this.entry.getLength());
+    }
+    
+    @Override
+    public long contentLength() {
+        return this.contentLength;
+    }
+    
+    @Override
+    public void writeTo(OutputStream out, WritableByteChannel channel) throws IOException {
+        WritableByteChannel target = channel != null ? channel : Channels.newChannel(out);
+        ByteBuffer cached = this.entry.getBody();
+        
+        if (cached != null) {
+            for (int i = 0; i < this.ranges.size(); i++) {
+                ByteRange range = this.ranges.get(i);
+                this.writePartHeader(i, out);
+                ByteBuffer slice = cached.duplicate();
+                slice.position((int) range.getStart()).limit((int) range.getEnd() + 1);
+                FileTransfer.writeFully(slice, target);
+            }
+        } else {
+            try (FileChannel file = FileChannel.open(this.entry.getFile().toPath(), StandardOpenOption.READ)) {
+                for (int i = 0; i < this.ranges.size(); i++) {
+                    ByteRange range = this.ranges.get(i);
+                    this.writePartHeader(i, out);
+                    FileTransfer.transfer(file, range.getStart(), range.getLength(), target, out);
+                }
+            }
+        }
+        
+        if (this.closingBoundary != null) {
+            out.write(this.closingBoundary);
+        }
+    }
+    
+    private void writePartHeader(int index, OutputStream out) throws IOException {
+        if (this.partHeaders != null) {
+            out.write(this.partHeaders[index]);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ConnectionTriage - Holds new connections on a selector until their request
+ * line arrives, so they can be classified without a worker waiting on them.
+ *
+ * Used while the workers are saturated: a connection queued for a worker
+ * before its first bytes arrived would not be known to be a health check.
+ * One thread serves every parked connection; each is handed to the dispatcher
+ * once its request target is complete, or unclassified after the timeout.
+ */
+class ConnectionTriage implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionTriage.class.getName());
+
+    private static final long TICK_MILLIS = 100;
+
+    /**
+     * Receives each connection once it has been classified or has timed out.
+     */
+    interface Dispatcher {
+        /**
+         * @param queuedAt System.nanoTime() when the connection started waiting
+         *                 for a worker; time spent parked here does not count
+         */
+        void dispatch(Socket socket, RequestPrefix prefix, long queuedAt);
+    }
+
+    private final Dispatcher dispatcher;
+    private final long timeoutNanos;
+    private final Selector selector;
+    private final Queue<Parked> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger parked = new AtomicInteger();
+    private volatile boolean running = true;
+
+    ConnectionTriage(Dispatcher dispatcher, long timeoutMillis) throws IOException {
+        this.dispatcher = dispatcher;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.selector = Selector.open();
+        Thread thread = new Thread(this::run, "connection-triage");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Wait for the connection's request line off the accepting thread.
+     */
+    void park(Socket socket, RequestPrefix prefix, long acceptedAt) {
+        this.parked.incrementAndGet();
+        this.incoming.add(new Parked(socket, prefix, acceptedAt));
+        this.selector.wakeup();
+    }
+
+    /**
+     * Connections waiting for their request line.
+     */
+    int getParkedCount() {
+        return this.parked.get();
+    }
+
+    private void run() {
+        List<Parked> ready = new ArrayList<>();
+        while (this.running) {
+            try {
+                this.selector.select(TICK_MILLIS);
+                this.registerIncoming(ready);
+                
+                Iterator<SelectionKey> selected = this.selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    Parked connection = (Parked) key.attachment();
+                    try {
+                        connection.prefix.readAvailable((SocketChannel) key.channel());
+                    } catch (IOException e) {
+                        connection.prefix.markEndOfStream();
+                    }
+                    if (connection.prefix.isComplete()) {
+                        key.cancel();
+                        ready.add(connection);
+                    }
+                }
+                
+                long now = System.nanoTime();
+                for (SelectionKey key : this.selector.keys()) {
+                    Parked connection = (Parked) key.attachment();
+                    if (key.isValid() && now - connection.acceptedAt > this.timeoutNanos) {
+                        key.cancel();
+                        ready.add(connection);
+                    }
+                }
+                this.release(ready);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Connection triage error", e);
+            }
+        }
+        
+        // Closing: hand everything over, the dispatcher refuses it
+        for (SelectionKey key : this.selector.keys()) {
+            key.cancel();
+            ready.add((Parked) key.attachment());
+        }
+        try {
+            this.registerIncoming(ready);
+            this.release(ready);
+            this.selector.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error closing connection triage", e);
+        }
+    }
+
+    private void registerIncoming(List<Parked> ready) {
+        Parked connection;
+        while ((connection = this.incoming.poll()) != null) {
+            if (!this.running) {
+                ready.add(connection);
+                continue;
+            }
+            try {
+                SocketChannel channel = connection.socket.getChannel();
+                channel.configureBlocking(false);
+                channel.register(this.selector, SelectionKey.OP_READ, connection);
+            } catch (ClosedChannelException e) {
+                connection.prefix.markEndOfStream();
+                ready.add(connection);
+            } catch (IOException e) {
+                ready.add(connection);
+            }
+        }
+    }
+
+    private void release(List<Parked> ready) throws IOException {
+        if (ready.isEmpty()) {
+            return;
+        }
+        // Cancelled keys are deregistered on the next select; only then can a channel block again
+        this.selector.selectNow();
+        for (Parked connection : ready) {
+            this.parked.decrementAndGet();
+            try {
+                connection.socket.getChannel().configureBlocking(true);
+            } catch (IOException e) {
+                // Unusable: dispatched as closed
+                connection.prefix.markEndOfStream();
+            }
+            try {
+                this.dispatcher.dispatch(connection.socket, connection.prefix, System.nanoTime());
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Error dispatching connection", e);
+            }
+        }
+        ready.clear();
+    }
+
+    /**
+     * Stop waiting and hand every parked connection to the dispatcher.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+
+    private static final class Parked {
+        private final Socket socket;
+        private final RequestPrefix prefix;
+        private final long acceptedAt;
+
+        Parked(Socket socket, RequestPrefix prefix, long acceptedAt) {
+            this.socket = socket;
+            this.prefix = prefix;
+            this.acceptedAt = acceptedAt;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DeadlineInputStream - A socket's input with a time limit for each phase of a request.
+ *
+ * SO_TIMEOUT only bounds a single read, so a client trickling one byte at a
+ * time would never trip it. Before every read the socket timeout is set from
+ * the current phase instead: the keep-alive timeout while waiting for a
+ * request, whatever is left of the header deadline once its first byte has
+ * arrived, and the body timeout between reads of the body.
+ */
+final class DeadlineInputStream extends InputStream {
+
+    private enum Phase { IDLE, HEADER, BODY }
+
+    private final Socket socket;
+    private final InputStream in;
+    private Phase phase = Phase.IDLE;
+    private long headerDeadlineNanos;
+    private int soTimeout = -1;
+
+    private int idleTimeoutMillis = 0;
+    private int headerTimeoutMillis = 0;
+    private int bodyTimeoutMillis = 0;
+
+    /**
+     * @param in the socket's input, with any bytes already read from it in front
+     */
+    DeadlineInputStream(Socket socket, InputStream in) {
+        this.socket = socket;
+        this.in = in;
+    }
+
+    /**
+     * @param idleMillis   longest wait for the next request to start (0 = none)
+     * @param headerMillis longest time from its first byte to the end of the header
+     *                     (0 = only the idle timeout between reads)
+     * @param bodyMillis   longest wait between reads of the body (0 = the idle timeout)
+     */
+    void setTimeouts(int idleMillis, int headerMillis, int bodyMillis) {
+        this.idleTimeoutMillis = idleMillis;
+        this.headerTimeoutMillis = headerMillis;
+        this.bodyTimeoutMillis = bodyMillis;
+    }
+
+    /**
+     * Wait for the next request; its header deadline starts with its first byte.
+     */
+    void awaitRequest() {
+        this.phase = Phase.IDLE;
+    }
+
+    /**
+     * The header has been read; what follows is body.
+     */
+    void beginBody() {
+        this.phase = Phase.BODY;
+    }
+
+    @Override
+    public int read() throws IOException {
+        this.applyTimeout();
+        int b;
+        try {
+            b = this.in.read();
+        } catch (SocketTimeoutException e) {
+            throw this.timedOut(e);
+        }
+        if (b >= 0) {
+            this.received();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        this.applyTimeout();
+        int n;
+        try {
+            n = this.in.read(b, off, len);
+        } catch (SocketTimeoutException e) {
+            throw this.timedOut(e);
+        }
+        if (n > 0) {
+            this.received();
+        }
+        return n;
+    }
+
+    private void received() {
+        if (this.phase == Phase.IDLE) {
+            this.phase = Phase.HEADER;
+            this.headerDeadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.headerTimeoutMillis);
+        }
+    }
+
+    private void applyTimeout() throws IOException {
+        int timeout = this.idleTimeoutMillis;
+        if (this.phase == Phase.HEADER && this.headerTimeoutMillis > 0) {
+            long remaining = this.headerDeadlineNanos - System.nanoTime();
+            if (remaining <= 0) {
+                throw new RequestTimeoutException(RequestTimeoutException.Phase.HEADER, this.headerTimeoutMillis);
+            }
+            // Round up: a timeout of 0 would mean no timeout at all
+            timeout = (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining + 999_999));
+        } else if (this.phase == Phase.BODY && this.bodyTimeoutMillis > 0) {
+            timeout = this.bodyTimeoutMillis;
+        }
+        if (timeout != this.soTimeout) {
+            this.socket.setSoTimeout(timeout);
+            this.soTimeout = timeout;
+        }
+    }
+
+    /**
+     * An idle keep-alive connection timing out is ordinary; anything else is a slow client.
+     */
+    private SocketTimeoutException timedOut(SocketTimeoutException e) {
+        switch (this.phase) {
+            case HEADER:
+                return new RequestTimeoutException(RequestTimeoutException.Phase.HEADER,
+                        this.headerTimeoutMillis > 0 ? this.headerTimeoutMillis : this.idleTimeoutMillis);
+            case BODY:
+                return new RequestTimeoutException(RequestTimeoutException.Phase.BODY,
+                        this.bodyTimeoutMillis > 0 ? this.bodyTimeoutMillis : this.idleTimeoutMillis);
+            default:
+                return e;
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return this.in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+}
@@ -0,0 +1,67 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * ExecutionMode - How SimpleHttpServer runs connection handlers.
+ * 
+ * PLATFORM uses a pool of platform threads with a bounded work queue; a full
+ * queue rejects new connections with RejectedExecutionException. The pool is
+ * fixed when its bounds are equal and an AdaptiveThreadPool otherwise.
+ * VIRTUAL starts one virtual thread per connection (JDK 21+) and falls back
+ * to the platform pool on older runtimes.
+ */
+public enum ExecutionMode {
+    PLATFORM,
+    VIRTUAL,
+    ;
+    
+    private static final Logger LOGGER = Logger.getLogger(ExecutionMode.class.getName());
+    
+    /**
+     * Create the executor for this mode.
+     */
+    public ExecutorService newExecutor(int platformPoolSize, int queueCapacity) {
+        return this.newExecutor(platformPoolSize, platformPoolSize, queueCapacity);
+    }
+    
+    /**
+     * Create the executor for this mode, with platform workers between the bounds.
+     */
+    public ExecutorService newExecutor(int minPoolSize, int maxPoolSize, int queueCapacity) {
+        if (this == VIRTUAL) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+            LOGGER.warning("Virtual threads are not available on this JVM, using platform thread pool");
+        }
+        if (minPoolSize < maxPoolSize) {
+            return new AdaptiveThreadPool(minPoolSize, maxPoolSize, queueCapacity);
+        }
+        return new ThreadPoolExecutor(maxPoolSize, maxPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+    }
+    
+    /**
+     * Looked up reflectively so the server still builds and runs on pre-21 JDKs.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+    
+    public static ExecutionMode fromString(String name) {
+        return ExecutionMode.valueOf(name.trim().toUpperCase());
+    }
+}
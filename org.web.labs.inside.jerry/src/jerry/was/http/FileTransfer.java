@@ -0,0 +1,76 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * FileTransfer - Copies a region of a file to the client without going through heap buffers.
+ * 
+ * Regions below the mapping threshold go through FileChannel.transferTo, which the
+ * JDK turns into sendfile when the target is a socket channel. Larger regions are
+ * memory-mapped and written straight from the page cache.
+ */
+public final class FileTransfer {
+    
+    /** Regions at least this large are served from a MappedByteBuffer. */
+    public static final long MMAP_THRESHOLD = 4L * 1024 * 1024;
+    
+    /** Mapping window, kept well below the 2 GB MappedByteBuffer limit. */
+    private static final long MAX_MAP_SIZE = 256L * 1024 * 1024;
+    
+    /**
+     * Write count bytes of the file starting at position.
+     * 
+     * @param target socket channel, or null when only a stream is available
+     * @param out    stream fallback used when target is null
+     */
+    public static void transfer(FileChannel file, long position, long count,
+            WritableByteChannel target, OutputStream out) throws IOException {
+        if (target == null) {
+            target = Channels.newChannel(out);
+        }
+        
+        if (count >= MMAP_THRESHOLD) {
+            transferMapped(file, position, count, target);
+        } else {
+            transferTo(file, position, count, target);
+        }
+    }
+    
+    private static void transferTo(FileChannel file, long position, long count,
+            WritableByteChannel target) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long sent = file.transferTo(position, end - position, target);
+            if (sent <= 0) {
+                // File shrank underneath us; the declared Content-Length can no longer be met
+                throw new IOException("Unexpected end of file at offset " + position);
+            }
+            position += sent;
+        }
+    }
+    
+    private static void transferMapped(FileChannel file, long position, long count,
+            WritableByteChannel target) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long window = Math.min(MAX_MAP_SIZE, end - position);
+            MappedByteBuffer mapped = file.map(FileChannel.MapMode.READ_ONLY, position, window);
+            writeFully(mapped, target);
+            position += window;
+        }
+    }
+    
+    static void writeFully(ByteBuffer buffer, WritableByteChannel target) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+    
+    private FileTransfer() {}
+}
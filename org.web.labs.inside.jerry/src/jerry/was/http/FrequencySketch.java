@@ -0,0 +1,92 @@
+package org.web.labs.inside.jerry.was.http;
+
+/**
+ * FrequencySketch - Approximate access counts of recently seen keys (Count-Min sketch).
+ *
+ * Four rows of 4-bit counters are packed sixteen to a long. A key increments one
+ * counter per row and its frequency is the smallest of the four, so collisions
+ * can only overestimate. Once the number of increments reaches the sample size
+ * every counter is halved, so old popularity fades and new keys can compete.
+ * Not thread-safe; callers synchronize.
+ */
+final class FrequencySketch {
+
+    private static final int ROWS = 4;
+    private static final long[] SEEDS = {
+        0x97cb3127L, 0xb4b82e0aL, 0x9e3779b1L, 0x85ebca6bL
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int rowMask;
+    private final int sampleSize;
+    private int additions = 0;
+
+    /**
+     * @param expectedKeys roughly how many distinct keys the cache holds
+     */
+    FrequencySketch(int expectedKeys) {
+        int counters = Integer.highestOneBit(Math.max(64, expectedKeys - 1)) << 1;
+        this.table = new long[counters / 16 * ROWS];
+        this.rowMask = counters / 16 - 1;
+        this.sampleSize = 10 * counters;
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int min = MAX_COUNT;
+        for (int row = 0; row < ROWS; row++) {
+            min = Math.min(min, this.counter(row, hash));
+        }
+        return min;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < ROWS; row++) {
+            int index = this.indexOf(row, hash);
+            int shift = this.shiftOf(row, hash);
+            if (((this.table[index] >>> shift) & MAX_COUNT) < MAX_COUNT) {
+                this.table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++this.additions >= this.sampleSize) {
+            this.reset();
+        }
+    }
+
+    /**
+     * Halve every counter.
+     */
+    private void reset() {
+        for (int i = 0; i < this.table.length; i++) {
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        this.additions /= 2;
+    }
+
+    private int counter(int row, int hash) {
+        return (int) ((this.table[this.indexOf(row, hash)] >>> this.shiftOf(row, hash)) & MAX_COUNT);
+    }
+
+    private int indexOf(int row, int hash) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return row * (this.rowMask + 1) + ((int) h & this.rowMask);
+    }
+
+    private int shiftOf(int row, int hash) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return (int) ((h >>> 40) & 15) << 2;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+        return hash;
+    }
+}
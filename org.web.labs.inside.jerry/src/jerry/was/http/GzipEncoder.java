@@ -0,0 +1,206 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.web.labs.inside.jerry.was.status.HeaderName;
+
+/**
+ * GzipEncoder - gzip content encoding backed by a pool of reused Deflaters.
+ * 
+ * Creating a Deflater allocates native zlib state, so instances are borrowed
+ * per response and reset instead of being created each time. Input and output
+ * byte counts are recorded for the compression ratio metric.
+ */
+public class GzipEncoder {
+    
+    private static final int DEFAULT_POOL_SIZE = 16;
+    
+    // Fixed gzip member header: magic, CM=deflate, no flags, no mtime, no XFL, OS=unknown
+    private static final byte[] GZIP_HEADER = {
+        (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+    private static final int GZIP_TRAILER_SIZE = 8;
+    
+    private final Queue<Deflater> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final int maxPoolSize;
+    private final int level;
+    
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    
+    public GzipEncoder() {
+        this(DEFAULT_POOL_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+    
+    public GzipEncoder(int maxPoolSize, int level) {
+        this.maxPoolSize = maxPoolSize;
+        this.level = level;
+    }
+    
+    /**
+     * Compress bytes into a complete gzip member.
+     */
+    public byte[] compress(byte[] input) {
+        Deflater deflater = this.borrow();
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            
+            byte[] out = Arrays.copyOf(GZIP_HEADER, Math.max(64, input.length / 2 + GZIP_HEADER.length + GZIP_TRAILER_SIZE));
+            int count = GZIP_HEADER.length;
+            while (!deflater.finished()) {
+                if (count == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                count += deflater.deflate(out, count, out.length - count);
+            }
+            
+            CRC32 crc = new CRC32();
+            crc.update(input);
+            if (count + GZIP_TRAILER_SIZE > out.length) {
+                out = Arrays.copyOf(out, count + GZIP_TRAILER_SIZE);
+            }
+            count = writeIntLE(out, count, (int) crc.getValue());
+            count = writeIntLE(out, count, input.length);
+            
+            this.bytesIn.add(input.length);
+            this.bytesOut.add(count);
+            this.responses.increment();
+            return count == out.length ? out : Arrays.copyOf(out, count);
+        } finally {
+            this.release(deflater);
+        }
+    }
+    
+    private static int writeIntLE(byte[] buf, int off, int value) {
+        buf[off] = (byte) value;
+        buf[off + 1] = (byte) (value >>> 8);
+        buf[off + 2] = (byte) (value >>> 16);
+        buf[off + 3] = (byte) (value >>> 24);
+        return off + 4;
+    }
+    
+    private Deflater borrow() {
+        Deflater deflater = this.pool.poll();
+        if (deflater != null) {
+            this.pooled.decrementAndGet();
+            return deflater;
+        }
+        return new Deflater(this.level, true);
+    }
+    
+    private void release(Deflater deflater) {
+        deflater.reset();
+        if (this.pooled.incrementAndGet() <= this.maxPoolSize) {
+            this.pool.offer(deflater);
+        } else {
+            this.pooled.decrementAndGet();
+            deflater.end();
+        }
+    }
+    
+    /**
+     * True when the request's Accept-Encoding allows gzip (q=0 means refused).
+     */
+    public static boolean acceptsGzip(HttpHeader header) {
+        return acceptsGzip(header.getHeader(HeaderName.ACCEPT_ENCODING));
+    }
+    
+    /**
+     * True when an Accept-Encoding value allows gzip, by coding token and q-value;
+     * null (no header) does not. An explicit gzip entry decides; "*" applies only
+     * when gzip is not listed.
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        // Scanned in place: this runs for most responses
+        boolean wildcard = false;
+        int start = 0;
+        while (start < acceptEncoding.length()) {
+            int end = acceptEncoding.indexOf(',', start);
+            if (end < 0) {
+                end = acceptEncoding.length();
+            }
+            int semicolon = acceptEncoding.indexOf(';', start);
+            int codingEnd = semicolon >= 0 && semicolon < end ? semicolon : end;
+            if (isToken(acceptEncoding, start, codingEnd, "gzip")) {
+                return !isZeroQuality(acceptEncoding, codingEnd + 1, end);
+            }
+            if (isToken(acceptEncoding, start, codingEnd, "*")) {
+                wildcard = !isZeroQuality(acceptEncoding, codingEnd + 1, end);
+            }
+            start = end + 1;
+        }
+        return wildcard;
+    }
+    
+    /**
+     * Optional whitespace around list elements and parameters: space or HTAB.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+    
+    private static boolean isToken(String s, int start, int end, String token) {
+        while (start < end && isWhitespace(s.charAt(start))) start++;
+        while (end > start && isWhitespace(s.charAt(end - 1))) end--;
+        return end - start == token.length() && s.regionMatches(true, start, token, 0, token.length());
+    }
+    
+    /**
+     * True when the parameters in s[start, end) include q=0 (or 0.0, 0.00, ...).
+     */
+    private static boolean isZeroQuality(String s, int start, int end) {
+        while (start < end) {
+            int paramEnd = s.indexOf(';', start);
+            if (paramEnd < 0 || paramEnd > end) {
+                paramEnd = end;
+            }
+            while (start < paramEnd && isWhitespace(s.charAt(start))) start++;
+            if (paramEnd - start > 2 && (s.charAt(start) == 'q' || s.charAt(start) == 'Q') && s.charAt(start + 1) == '=') {
+                if (s.charAt(start + 2) != '0') {
+                    return false;
+                }
+                for (int i = start + 3; i < paramEnd; i++) {
+                    char c = s.charAt(i);
+                    if (c != '0' && c != '.' && !isWhitespace(c)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            start = paramEnd + 1;
+        }
+        return false;
+    }
+    
+    /**
+     * Compressed size divided by original size over all responses so far (1.0 when idle).
+     */
+    public double getCompressionRatio() {
+        long in = this.bytesIn.sum();
+        return in == 0 ? 1.0 : (double) this.bytesOut.sum() / in;
+    }
+    
+    public long getBytesIn() {
+        return this.bytesIn.sum();
+    }
+    
+    public long getBytesOut() {
+        return this.bytesOut.sum();
+    }
+    
+    public long getCompressedResponses() {
+        return this.responses.sum();
+    }
+}
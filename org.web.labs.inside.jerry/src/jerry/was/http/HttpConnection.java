@@ -0,0 +1,338 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.web.labs.inside.jerry.was.status.Status;
+
+/**
+ * HttpConnection - State of one client socket across keep-alive requests.
+ *
+ * Reads are bounded per phase by a DeadlineInputStream. Writes are given a
+ * deadline from their size and the minimum write rate; a socket timeout does
+ * not apply to blocking writes, so expireWrite is called from a watchdog
+ * thread and closes the socket under a stalled write.
+ */
+public class HttpConnection implements Closeable {
+    
+    private final Socket socket;
+    private final DeadlineInputStream in;
+    private final RequestContext context;
+    private final OutputStream out;
+    private int requestCount = 0;
+    private boolean keepAlive = false;
+    private volatile boolean idle = true;
+    private Runnable resumption;
+    private long requestStartNanos;
+    private Status responseStatus;
+    private long responseBytes;
+    private long bytesReadReported = 0;
+    private RequestBody requestBody;
+    // Minimum write rate in bytes per second (0 = no write deadline) and the time allowed on top
+    private long minWriteRate = 0;
+    private long writeGraceNanos = 0;
+    // When the write in progress must be done by, from System.nanoTime(); 0 while not writing
+    private volatile long writeDeadlineNanos = 0;
+    private volatile boolean writeTimedOut = false;
+    
+    public HttpConnection(Socket socket) throws IOException {
+        this(socket, socket.getInputStream());
+    }
+    
+    /**
+     * @param in the socket's input, with any bytes already read from it in front
+     */
+    HttpConnection(Socket socket, InputStream in) throws IOException {
+        this.socket = socket;
+        this.in = new DeadlineInputStream(socket, in);
+        this.context = new RequestContext(this.in);
+        this.out = new DeadlineOutputStream(socket.getOutputStream());
+    }
+    
+    /**
+     * Set how long a read may block before the connection is treated as idle.
+     */
+    public void setIdleTimeout(int timeoutMillis) throws SocketException {
+        this.setReadTimeouts(timeoutMillis, 0, 0);
+    }
+    
+    /**
+     * Set the time limits for reading requests.
+     *
+     * @param idleMillis   longest wait for the next request to start (0 = none)
+     * @param headerMillis longest time from the first byte of a request to the end
+     *                     of its header (0 = only the idle timeout between reads)
+     * @param bodyMillis   longest wait between reads of a body (0 = the idle timeout)
+     */
+    public void setReadTimeouts(int idleMillis, int headerMillis, int bodyMillis) throws SocketException {
+        this.in.setTimeouts(idleMillis, headerMillis, bodyMillis);
+        this.socket.setSoTimeout(idleMillis);
+    }
+    
+    /**
+     * Require responses to be accepted by the client at a minimum rate.
+     *
+     * @param bytesPerSecond slowest acceptable rate (0 = writes may block forever)
+     * @param graceMillis    time allowed on top, e.g. for the head and a full send window
+     */
+    public void setMinWriteRate(int bytesPerSecond, int graceMillis) {
+        this.minWriteRate = bytesPerSecond;
+        this.writeGraceNanos = TimeUnit.MILLISECONDS.toNanos(graceMillis);
+    }
+    
+    /**
+     * Mark the connection as waiting for the next request line.
+     */
+    public void awaitRequest() {
+        this.idle = true;
+        this.in.awaitRequest();
+    }
+    
+    /**
+     * Start a new request and decide whether the connection stays open after it.
+     */
+    public void beginRequest(HttpRequest request, int maxRequests, boolean allowKeepAlive) {
+        HttpHeader header = request.getHeader();
+        this.idle = false;
+        this.requestBody = request.getBody();
+        this.requestStartNanos = System.nanoTime();
+        this.responseStatus = null;
+        this.responseBytes = 0;
+        this.requestCount++;
+        this.keepAlive = allowKeepAlive
+                && header.isKeepAlive()
+                && (maxRequests <= 0 || this.requestCount < maxRequests);
+    }
+    
+    /**
+     * Mark the current request as waiting for an asynchronous result; the
+     * thread serving the connection hands it off instead of reading on.
+     *
+     * @param resume registers whatever picks the connection up again; run by
+     *               that thread only once it has let go of the connection, so
+     *               the two never use it at the same time
+     */
+    public void suspend(Runnable resume) {
+        this.resumption = resume;
+    }
+    
+    /**
+     * @return the action passed to suspend() since the last check, or null; clears the mark
+     */
+    public Runnable takeSuspended() {
+        Runnable resume = this.resumption;
+        this.resumption = null;
+        return resume;
+    }
+    
+    /**
+     * Close the connection after the current response, e.g. when its body
+     * could not be delimited or was cut short.
+     */
+    public void disableKeepAlive() {
+        this.keepAlive = false;
+    }
+    
+    /**
+     * Body of the current request, read from this connection's stream.
+     */
+    public RequestBody getRequestBody() {
+        return this.requestBody;
+    }
+    
+    /**
+     * Skip what the previous request left unread of its body, so the stream is
+     * at the next request line.
+     *
+     * @return false if more than maxBytes were left, and the connection should be closed
+     */
+    public boolean drainRequestBody(long maxBytes) throws IOException {
+        RequestBody body = this.requestBody;
+        this.requestBody = null;
+        return body == null || body.skipRemaining(maxBytes);
+    }
+    
+    public boolean isKeepAlive() {
+        return this.keepAlive;
+    }
+    
+    public boolean isIdle() {
+        return this.idle;
+    }
+    
+    public int getRequestCount() {
+        return this.requestCount;
+    }
+    
+    /**
+     * When the current request's header had been read, from System.nanoTime().
+     */
+    public long getRequestStartNanos() {
+        return this.requestStartNanos;
+    }
+    
+    /**
+     * Remember the status and size of the response sent for the current request.
+     */
+    public void responseSent(Status status, long bytes) {
+        this.responseStatus = status;
+        this.responseBytes = bytes;
+    }
+    
+    /**
+     * Status sent for the current request, or null if nothing was sent.
+     */
+    public Status getResponseStatus() {
+        return this.responseStatus;
+    }
+    
+    public long getResponseBytes() {
+        return this.responseBytes;
+    }
+    
+    /**
+     * Bytes read from the socket since the previous call.
+     */
+    public long takeBytesRead() {
+        long total = this.context.getInputStream().getBytesRead();
+        long delta = total - this.bytesReadReported;
+        this.bytesReadReported = total;
+        return delta;
+    }
+    
+    /**
+     * Read the next request header into this connection's reusable request.
+     */
+    public HttpRequest readRequest(long maxBodySize) throws IOException {
+        HttpRequest request = this.context.readRequest(maxBodySize);
+        this.in.beginBody();
+        return request;
+    }
+    
+    /**
+     * Start a write of about this many bytes; it must finish within the grace
+     * time plus the time the minimum write rate allows for them. Writes through
+     * getOutputStream() outside of beginWrite/endWrite are timed one by one.
+     */
+    public void beginWrite(long bytes) {
+        if (this.minWriteRate > 0) {
+            this.writeDeadlineNanos = System.nanoTime() + this.writeGraceNanos
+                    + TimeUnit.SECONDS.toNanos(Math.max(0, bytes)) / this.minWriteRate;
+        }
+    }
+    
+    public void endWrite() {
+        this.writeDeadlineNanos = 0;
+    }
+    
+    /**
+     * Close the socket if the write in progress has passed its deadline, which
+     * fails the blocked write. Called from a thread other than the writer's.
+     *
+     * @return whether the connection was closed
+     */
+    public boolean expireWrite(long nowNanos) {
+        long deadline = this.writeDeadlineNanos;
+        if (deadline == 0 || nowNanos - deadline < 0 || this.writeTimedOut) {
+            return false;
+        }
+        this.writeTimedOut = true;
+        try {
+            this.socket.close();
+        } catch (IOException e) {
+            // Closed either way
+        }
+        return true;
+    }
+    
+    /**
+     * Whether the connection was closed because the client read a response too slowly.
+     */
+    public boolean isWriteTimedOut() {
+        return this.writeTimedOut;
+    }
+    
+    /**
+     * This connection's reusable response, cleared and set to the given status.
+     */
+    public HttpResponse response(Status status) {
+        return this.context.response(status);
+    }
+    
+    public HttpInputStream getInputStream() {
+        return this.context.getInputStream();
+    }
+    
+    public OutputStream getOutputStream() {
+        return this.out;
+    }
+    
+    /**
+     * Reusable buffer responses on this connection are serialized into.
+     */
+    public ResponseBuffer getResponseBuffer() {
+        return this.context.getResponseBuffer();
+    }
+    
+    /**
+     * Underlying socket channel, or null when the socket was not created from one.
+     */
+    public SocketChannel getChannel() {
+        return this.socket.getChannel();
+    }
+    
+    public Socket getSocket() {
+        return this.socket;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+    
+    /**
+     * Socket output whose writes each get a deadline unless one is already set.
+     */
+    private final class DeadlineOutputStream extends OutputStream {
+        private final OutputStream out;
+        
+        DeadlineOutputStream(OutputStream out) {
+            this.out = out;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (writeDeadlineNanos != 0 || minWriteRate <= 0) {
+                this.out.write(b, off, len);
+                return;
+            }
+            beginWrite(len);
+            try {
+                this.out.write(b, off, len);
+            } finally {
+                endWrite();
+            }
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            this.out.close();
+        }
+    }
+}
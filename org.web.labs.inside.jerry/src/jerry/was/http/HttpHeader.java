@@ -3,135 +3,464 @@ package org.web.labs.inside.jerry.was.http;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.web.labs.inside.jerry.was.status.HeaderName;
 import org.web.labs.inside.jerry.was.status.HttpMethod;
-import org.web.labs.inside.jerry.was.status.IOUtil;
-
-import static org.web.labs.inside.jerry.was.status.Constant.*;
 
+/**
+ * HttpHeader - Request line and header fields of one request.
+ *
+ * The header block is parsed in place inside the connection's HttpInputStream
+ * buffer. Only the request line is decoded up front; header names and values
+ * stay as offsets into the buffer and are turned into Strings when requested,
+ * so they are valid until the next request is read from the same connection.
+ *
+ * One instance can be reused for every request on a connection: parse() resets
+ * it in place. Fields named in HeaderName are indexed by ordinal as they are
+ * parsed, and the decoded target and known header values are remembered, so a
+ * keep-alive client repeating the same request allocates nothing here.
+ */
 public class HttpHeader {
-    
+
+    private static final int INITIAL_FIELDS = 16;
+    private static final int TARGET_CACHE_SIZE = 16;
+    private static final HeaderName[] KNOWN = HeaderName.values();
+    private static final String HTTP_1_0 = "HTTP/1.0";
+    private static final String HTTP_1_1 = "HTTP/1.1";
+
     private HttpMethod method;
     private String path;
     private String queryString;
-    private final String headerText;
-    private Map<String, String> messageHeaders = new HashMap<>();
-    private Map<String, String> queryParams = new HashMap<>();
-    
+    private String version;
+    private String headerText;
+    private final Map<String, String> queryParams = new HashMap<>();
+    private final Map<String, String> queryParamsView = Collections.unmodifiableMap(this.queryParams);
+    private boolean queryParsed;
+
+    // Header block [0, blockLength) and per field: name start/end, value start/end
+    private byte[] buf;
+    private int blockLength;
+    private int[] fields = new int[INITIAL_FIELDS * 4];
+    private String[] values = new String[INITIAL_FIELDS];
+    private int fieldCount = 0;
+
+    // Field index of each HeaderName (last occurrence), or -1
+    private final int[] known = new int[KNOWN.length];
+    // Value decoded for each HeaderName on an earlier request, reused while the bytes match
+    private final String[] knownValues = new String[KNOWN.length];
+    private final Target[] targets = new Target[TARGET_CACHE_SIZE];
+
     public HttpHeader(InputStream in) throws IOException {
-        StringBuilder header = new StringBuilder();
-
-        header.append(this.readRequestLine(in))
-              .append(this.readMessageLine(in));
-        
-        this.headerText = header.toString();
-    }
-    
-    private String readRequestLine(InputStream in) throws IOException {
-        String requestLine = IOUtil.readLine(in);
-        
-        String[] tmp = requestLine.split(" ");
-        this.method = HttpMethod.valueOf(tmp[0].toUpperCase());
-        
-        String fullPath = URLDecoder.decode(tmp[1], "UTF-8");
-        
-        // Parse query string if present
-        int queryIndex = fullPath.indexOf('?');
-        if (queryIndex >= 0) {
-            this.path = fullPath.substring(0, queryIndex);
-            this.queryString = fullPath.substring(queryIndex + 1);
-            parseQueryString();
+        this.parse(HttpInputStream.of(in));
+    }
+
+    /**
+     * An empty header, filled in by parse().
+     */
+    HttpHeader() {
+    }
+
+    /**
+     * Read the next request header from the stream, replacing the previous one.
+     */
+    void parse(HttpInputStream input) throws IOException {
+        Arrays.fill(this.values, 0, this.fieldCount, null);
+        Arrays.fill(this.known, -1);
+        this.fieldCount = 0;
+        this.headerText = null;
+        this.queryParsed = false;
+
+        this.blockLength = input.readHeaderBlock();
+        this.buf = input.headerBuffer();
+
+        int lineEnd = this.parseRequestLine();
+        this.parseFields(lineEnd);
+    }
+
+    /**
+     * @return offset of the first header line
+     */
+    private int parseRequestLine() throws IOException {
+        int eol = indexOf(this.buf, (byte) '\n', 0, this.blockLength);
+        int end = eol > 0 && this.buf[eol - 1] == '\r' ? eol - 1 : eol;
+
+        int sp1 = indexOf(this.buf, (byte) ' ', 0, end);
+        if (sp1 <= 0) {
+            throw new IOException("Malformed request line");
+        }
+        int sp2 = indexOf(this.buf, (byte) ' ', sp1 + 1, end);
+        int targetEnd = sp2 < 0 ? end : sp2;
+
+        this.method = toMethod(this.buf, 0, sp1);
+        if (sp2 < 0 || equalsIgnoreCase(this.buf, sp2 + 1, end, HTTP_1_1)) {
+            this.version = sp2 < 0 ? HTTP_1_0 : HTTP_1_1;
+        } else if (equalsIgnoreCase(this.buf, sp2 + 1, end, HTTP_1_0)) {
+            this.version = HTTP_1_0;
         } else {
-            this.path = fullPath;
-            this.queryString = "";
+            this.version = new String(this.buf, sp2 + 1, end - sp2 - 1, StandardCharsets.US_ASCII);
         }
-        
-        return requestLine + CRLF;
+
+        Target target = this.target(sp1 + 1, targetEnd);
+        this.path = target.path;
+        this.queryString = target.query;
+
+        return eol + 1;
     }
-    
-    private void parseQueryString() {
-        if (queryString == null || queryString.isEmpty()) {
-            return;
+
+    /**
+     * Decoded path and query of the request target, from the cache when the same
+     * bytes were seen before.
+     */
+    private Target target(int start, int end) throws IOException {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + this.buf[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (TARGET_CACHE_SIZE - 1);
+        Target cached = this.targets[slot];
+        if (cached != null && cached.matches(this.buf, start, end)) {
+            return cached;
         }
-        
-        String[] pairs = queryString.split("&");
-        for (String pair : pairs) {
-            int eqIndex = pair.indexOf('=');
-            if (eqIndex > 0) {
-                String key = pair.substring(0, eqIndex);
-                String value = eqIndex < pair.length() - 1 ? pair.substring(eqIndex + 1) : "";
-                queryParams.put(key, value);
+
+        // Only percent-encoded or '+' targets need URLDecoder
+        boolean encoded = false;
+        for (int i = start; i < end; i++) {
+            if (this.buf[i] == '%' || this.buf[i] == '+') {
+                encoded = true;
+                break;
             }
         }
+
+        String fullPath = new String(this.buf, start, end - start, StandardCharsets.UTF_8);
+        if (encoded) {
+            fullPath = URLDecoder.decode(fullPath, "UTF-8");
+        }
+
+        // Split off query string if present
+        int queryIndex = fullPath.indexOf('?');
+        Target target = queryIndex >= 0
+                ? new Target(this.buf, start, end, fullPath.substring(0, queryIndex), fullPath.substring(queryIndex + 1))
+                : new Target(this.buf, start, end, fullPath, "");
+        this.targets[slot] = target;
+        return target;
     }
-    
-    private StringBuilder readMessageLine(InputStream in) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        
-        String messageLine = IOUtil.readLine(in);
-        
-        while (messageLine != null && !messageLine.isEmpty()) {
-            this.putMessageLine(messageLine);
-            
-            sb.append(messageLine + CRLF);
-            messageLine = IOUtil.readLine(in);
+
+    private static HttpMethod toMethod(byte[] buf, int start, int end) {
+        for (HttpMethod candidate : HttpMethod.values()) {
+            if (equalsIgnoreCase(buf, start, end, candidate.name())) {
+                return candidate;
+            }
+        }
+        return HttpMethod.valueOf(new String(buf, start, end - start, StandardCharsets.US_ASCII).toUpperCase());
+    }
+
+    private void parseFields(int offset) {
+        while (offset < this.blockLength) {
+            int eol = indexOf(this.buf, (byte) '\n', offset, this.blockLength);
+            if (eol < 0) {
+                eol = this.blockLength;
+            }
+            int end = eol > offset && this.buf[eol - 1] == '\r' ? eol - 1 : eol;
+            if (end == offset) {
+                break; // empty line ends the header block
+            }
+
+            int colon = indexOf(this.buf, (byte) ':', offset, end);
+            if (colon > offset) {
+                this.addField(offset, colon, colon + 1, end);
+            }
+            offset = eol + 1;
+        }
+    }
+
+    private void addField(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        while (nameEnd > nameStart && isWhitespace(this.buf[nameEnd - 1])) nameEnd--;
+        while (nameStart < nameEnd && isWhitespace(this.buf[nameStart])) nameStart++;
+        while (valueStart < valueEnd && isWhitespace(this.buf[valueStart])) valueStart++;
+        while (valueEnd > valueStart && isWhitespace(this.buf[valueEnd - 1])) valueEnd--;
+
+        if (this.fieldCount == this.values.length) {
+            this.fields = Arrays.copyOf(this.fields, this.fields.length * 2);
+            this.values = Arrays.copyOf(this.values, this.values.length * 2);
+        }
+        int base = this.fieldCount * 4;
+        this.fields[base] = nameStart;
+        this.fields[base + 1] = nameEnd;
+        this.fields[base + 2] = valueStart;
+        this.fields[base + 3] = valueEnd;
+        for (HeaderName name : KNOWN) {
+            if (equalsIgnoreCase(this.buf, nameStart, nameEnd, name.toString())) {
+                this.known[name.ordinal()] = this.fieldCount;
+                break;
+            }
+        }
+        this.fieldCount++;
+    }
+
+    /**
+     * @return index of the last field with this name (case-insensitive), or -1
+     */
+    private int findField(String name) {
+        HeaderName known = HeaderName.lookup(name);
+        if (known != null) {
+            return this.known[known.ordinal()];
         }
-        
-        return sb;
+        for (int i = this.fieldCount - 1; i >= 0; i--) {
+            if (equalsIgnoreCase(this.buf, this.fields[i * 4], this.fields[i * 4 + 1], name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean fieldEqualsIgnoreCase(HeaderName name, String value) {
+        int i = this.known[name.ordinal()];
+        return i >= 0 && equalsIgnoreCase(this.buf, this.fields[i * 4 + 2], this.fields[i * 4 + 3], value);
     }
-    
-    private void putMessageLine(String messageLine) {
-        int colonIndex = messageLine.indexOf(':');
-        if (colonIndex > 0) {
-            String key = messageLine.substring(0, colonIndex).trim();
-            String value = messageLine.substring(colonIndex + 1).trim();
-            this.messageHeaders.put(key, value);
+
+    private void parseQueryString() {
+        this.queryParsed = true;
+        if (this.queryParams.isEmpty() && this.queryString.isEmpty()) {
+            return;
+        }
+        this.queryParams.clear();
+
+        int start = 0;
+        while (start < this.queryString.length()) {
+            int end = this.queryString.indexOf('&', start);
+            if (end < 0) {
+                end = this.queryString.length();
+            }
+            int eqIndex = this.queryString.indexOf('=', start);
+            if (eqIndex > start && eqIndex < end) {
+                this.queryParams.put(this.queryString.substring(start, eqIndex), this.queryString.substring(eqIndex + 1, end));
+            }
+            start = end + 1;
         }
     }
 
     public String getText() {
+        if (this.headerText == null) {
+            // Request line and header lines, without the terminating empty line
+            int end = this.blockLength;
+            if (end > 0 && this.buf[end - 1] == '\n') end--;
+            if (end > 0 && this.buf[end - 1] == '\r') end--;
+            this.headerText = new String(this.buf, 0, end, StandardCharsets.UTF_8);
+        }
         return this.headerText;
     }
-    
+
     public int getContentLength() {
-        return Integer.parseInt(this.messageHeaders.getOrDefault("Content-Length", "0"));
+        long length;
+        try {
+            length = this.getContentLengthLong();
+        } catch (BadRequestException e) {
+            throw new NumberFormatException(e.getMessage());
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Invalid Content-Length: " + this.getHeader("Content-Length"));
+        }
+        return (int) length;
+    }
+
+    /**
+     * The declared body length, 0 without a Content-Length. A value beyond
+     * Long.MAX_VALUE comes back as Long.MAX_VALUE, so it is refused as too large.
+     *
+     * @throws BadRequestException if the value is empty or not a decimal number
+     */
+    public long getContentLengthLong() throws BadRequestException {
+        int i = this.known[HeaderName.CONTENT_LENGTH.ordinal()];
+        if (i < 0) {
+            return 0;
+        }
+        int start = this.fields[i * 4 + 2];
+        int end = this.fields[i * 4 + 3];
+        if (start == end) {
+            throw new BadRequestException("Empty Content-Length");
+        }
+        long length = 0;
+        for (int p = start; p < end; p++) {
+            int digit = this.buf[p] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new BadRequestException("Invalid Content-Length: " + this.getHeader("Content-Length"));
+            }
+            length = length > (Long.MAX_VALUE - digit) / 10 ? Long.MAX_VALUE : length * 10 + digit;
+        }
+        return length;
     }
 
     public boolean isChunkedTransfer() {
-        return this.messageHeaders.getOrDefault("Transfer-Encoding", "-").equals("chunked");
+        return this.fieldEqualsIgnoreCase(HeaderName.TRANSFER_ENCODING, "chunked");
     }
 
     public String getPath() {
         return this.path;
     }
-    
+
     public String getQueryString() {
         return this.queryString;
     }
-    
+
     public String getQueryParam(String name) {
+        if (!this.queryParsed) {
+            this.parseQueryString();
+        }
         return this.queryParams.get(name);
     }
-    
+
+    /**
+     * Read-only view of the query parameters, valid until the next request is
+     * read from the connection; copy it to keep it longer.
+     */
     public Map<String, String> getQueryParams() {
-        return new HashMap<>(this.queryParams);
+        if (!this.queryParsed) {
+            this.parseQueryString();
+        }
+        return this.queryParamsView;
     }
 
     public boolean isGetMethod() {
         return this.method == HttpMethod.GET;
     }
-    
+
     public boolean isPostMethod() {
         return this.method == HttpMethod.POST;
     }
-    
+
     public HttpMethod getMethod() {
         return this.method;
     }
-    
+
+    /**
+     * Value of a known header without scanning the fields.
+     */
+    public String getHeader(HeaderName name) {
+        int i = this.known[name.ordinal()];
+        if (i < 0) {
+            return null;
+        }
+        if (this.values[i] == null) {
+            int start = this.fields[i * 4 + 2];
+            int end = this.fields[i * 4 + 3];
+            String previous = this.knownValues[name.ordinal()];
+            this.values[i] = previous != null && equalsAscii(this.buf, start, end, previous)
+                    ? previous
+                    : new String(this.buf, start, end - start, StandardCharsets.UTF_8);
+            this.knownValues[name.ordinal()] = this.values[i];
+        }
+        return this.values[i];
+    }
+
     public String getHeader(String name) {
-        return this.messageHeaders.get(name);
+        HeaderName known = HeaderName.lookup(name);
+        if (known != null) {
+            return this.getHeader(known);
+        }
+        int i = this.findField(name);
+        if (i < 0) {
+            return null;
+        }
+        if (this.values[i] == null) {
+            int start = this.fields[i * 4 + 2];
+            this.values[i] = new String(this.buf, start, this.fields[i * 4 + 3] - start, StandardCharsets.UTF_8);
+        }
+        return this.values[i];
+    }
+
+    public String getVersion() {
+        return this.version;
+    }
+
+    /**
+     * HTTP/1.1 connections persist unless the client sends "Connection: close";
+     * HTTP/1.0 connections persist only on an explicit "Connection: keep-alive".
+     */
+    public boolean isKeepAlive() {
+        if (HTTP_1_1.equals(this.version)) {
+            return !this.fieldEqualsIgnoreCase(HeaderName.CONNECTION, "close");
+        }
+        return this.fieldEqualsIgnoreCase(HeaderName.CONNECTION, "keep-alive");
+    }
+
+    private static int indexOf(byte[] buf, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * ASCII case-insensitive comparison of buf[start, end) with an ASCII string.
+     */
+    static boolean equalsIgnoreCase(byte[] buf, int start, int end, String ascii) {
+        if (end - start != ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            int a = buf[start + i];
+            int b = ascii.charAt(i);
+            if (a != b && toLower(a) != toLower(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Exact comparison of buf[start, end) with a string; false for non-ASCII content.
+     */
+    private static boolean equalsAscii(byte[] buf, int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (buf[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLower(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    /**
+     * A request target as received, with its decoded path and query string.
+     */
+    private static final class Target {
+        private final byte[] raw;
+        private final String path;
+        private final String query;
+
+        Target(byte[] buf, int start, int end, String path, String query) {
+            this.raw = Arrays.copyOfRange(buf, start, end);
+            this.path = path;
+            this.query = query;
+        }
+
+        boolean matches(byte[] buf, int start, int end) {
+            if (end - start != this.raw.length) {
+                return false;
+            }
+            for (int i = 0; i < this.raw.length; i++) {
+                if (buf[start + i] != this.raw[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 }
@@ -0,0 +1,235 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HttpInputStream - Buffered request reader for one connection.
+ *
+ * Bytes are pulled from the socket in bulk into a single reusable array and
+ * CRLF is searched for in place. The header block of the current request is
+ * kept at the front of the buffer so HttpHeader can refer to it by offsets;
+ * it stays valid until the next request header is read.
+ */
+public class HttpInputStream extends InputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    /** Upper bound for the request line plus all header lines. */
+    public static final int MAX_HEADER_SIZE = 8 * 1024;
+
+    private final InputStream in;
+    private final byte[] buf;
+    private int pos = 0;
+    private int limit = 0;
+
+    // End of the header block pinned at the front of the buffer
+    private int headerEnd = 0;
+
+    // Total bytes pulled from the underlying stream
+    private long bytesRead = 0;
+
+    public HttpInputStream(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public HttpInputStream(InputStream in, int bufferSize) {
+        if (bufferSize <= MAX_HEADER_SIZE) {
+            throw new IllegalArgumentException("Buffer must be larger than " + MAX_HEADER_SIZE + " bytes");
+        }
+        this.in = in;
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Wrap a stream unless it already is an HttpInputStream.
+     */
+    public static HttpInputStream of(InputStream in) {
+        return in instanceof HttpInputStream ? (HttpInputStream) in : new HttpInputStream(in);
+    }
+
+    /**
+     * Read the next request header block (request line through the empty line)
+     * and move it to the front of the buffer.
+     *
+     * @return length of the block, including the terminating empty line
+     * @throws EmptyRequestException if the stream ends before a complete header
+     */
+    public int readHeaderBlock() throws IOException {
+        this.headerEnd = 0;
+        int scan = 0;
+        while (true) {
+            // Tolerate empty lines before the request line
+            while (this.pos < this.limit && (this.buf[this.pos] == '\r' || this.buf[this.pos] == '\n')) {
+                this.pos++;
+            }
+            
+            // Unread bytes (pipelined requests) move to the front; the previous header is released
+            if (this.pos > 0) {
+                System.arraycopy(this.buf, this.pos, this.buf, 0, this.limit - this.pos);
+                this.limit -= this.pos;
+                scan = Math.max(0, scan - this.pos);
+                this.pos = 0;
+            }
+
+            int end = this.findHeaderEnd(scan);
+            if (end >= 0) {
+                this.pos = end;
+                this.headerEnd = end;
+                return end;
+            }
+            scan = Math.max(0, this.limit - 3);
+
+            if (this.limit >= MAX_HEADER_SIZE) {
+                throw new IOException("Request header exceeds " + MAX_HEADER_SIZE + " bytes");
+            }
+            int n = this.readSource(this.buf, this.limit, this.buf.length - this.limit);
+            if (n < 0) {
+                throw new EmptyRequestException();
+            }
+            this.limit += n;
+        }
+    }
+
+    /**
+     * @return offset just past the CRLFCRLF (or LFLF) that ends the header block, or -1
+     */
+    private int findHeaderEnd(int from) {
+        for (int i = from; i < this.limit; i++) {
+            if (this.buf[i] != '\n') {
+                continue;
+            }
+            if (i + 1 < this.limit && this.buf[i + 1] == '\n') {
+                return i + 2;
+            }
+            if (i + 2 < this.limit && this.buf[i + 1] == '\r' && this.buf[i + 2] == '\n') {
+                return i + 3;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Raw buffer holding the current header block at [0, headerLength).
+     */
+    byte[] headerBuffer() {
+        return this.buf;
+    }
+
+    /**
+     * Read one CRLF- (or LF-) terminated line after the header, e.g. a chunk size.
+     */
+    public String readLine() throws IOException {
+        int scan = this.pos;
+        while (true) {
+            for (; scan < this.limit; scan++) {
+                if (this.buf[scan] == '\n') {
+                    int end = scan > this.pos && this.buf[scan - 1] == '\r' ? scan - 1 : scan;
+                    String line = new String(this.buf, this.pos, end - this.pos, StandardCharsets.UTF_8);
+                    this.pos = scan + 1;
+                    return line;
+                }
+            }
+
+            if (this.pos == this.limit) {
+                this.pos = this.limit = this.headerEnd;
+                scan = this.pos;
+            } else if (this.limit == this.buf.length) {
+                int pending = this.limit - this.pos;
+                if (this.pos == this.headerEnd) {
+                    throw new IOException("Line exceeds " + (this.buf.length - this.headerEnd) + " bytes");
+                }
+                System.arraycopy(this.buf, this.pos, this.buf, this.headerEnd, pending);
+                this.pos = this.headerEnd;
+                this.limit = this.pos + pending;
+                scan = this.limit;
+            }
+
+            int n = this.readSource(this.buf, this.limit, this.buf.length - this.limit);
+            if (n < 0) {
+                throw new EmptyRequestException();
+            }
+            this.limit += n;
+        }
+    }
+
+    /**
+     * Read exactly b.length bytes.
+     */
+    public void readFully(byte[] b) throws IOException {
+        int off = 0;
+        while (off < b.length) {
+            int n = this.read(b, off, b.length - off);
+            if (n < 0) {
+                throw new EmptyRequestException();
+            }
+            off += n;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (this.pos == this.limit && this.fill() < 0) {
+            return -1;
+        }
+        return this.buf[this.pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (this.pos == this.limit) {
+            // Large reads bypass the buffer entirely
+            if (len >= this.buf.length - this.headerEnd) {
+                return this.readSource(b, off, len);
+            }
+            if (this.fill() < 0) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, this.limit - this.pos);
+        System.arraycopy(this.buf, this.pos, b, off, n);
+        this.pos += n;
+        return n;
+    }
+
+    /**
+     * Bytes read from the underlying stream so far, buffered or not.
+     */
+    public long getBytesRead() {
+        return this.bytesRead;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (this.limit - this.pos) + this.in.available();
+    }
+
+    /**
+     * Refill the space behind the pinned header block.
+     */
+    private int fill() throws IOException {
+        this.pos = this.limit = this.headerEnd;
+        int n = this.readSource(this.buf, this.limit, this.buf.length - this.limit);
+        if (n > 0) {
+            this.limit += n;
+        }
+        return n;
+    }
+
+    private int readSource(byte[] b, int off, int len) throws IOException {
+        int n = this.in.read(b, off, len);
+        if (n > 0) {
+            this.bytesRead += n;
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+}
@@ -4,66 +4,71 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 
-import org.web.labs.inside.jerry.was.status.IOUtil;
-
 public class HttpRequest {
     
-    private final HttpHeader header;
-    private final String bodyText;
+    /** Body size limit when none is given. */
+    public static final long DEFAULT_MAX_BODY_SIZE = 10L * 1024 * 1024;
+    
+    private final HttpHeader header = new HttpHeader();
+    private final RequestBody body = RequestBody.empty(null);
+    private String bodyText;
     
     public HttpRequest(InputStream input) {
+        this(input, DEFAULT_MAX_BODY_SIZE);
+    }
+    
+    /**
+     * Read the header; the body is left on the stream and read through getBody().
+     *
+     * @param maxBodySize largest body accepted, in bytes
+     */
+    public HttpRequest(InputStream input, long maxBodySize) {
         try {
-            this.header = new HttpHeader(input);
-            this.bodyText = this.readBody(input);
+            // Header and body must share one buffer so no read-ahead bytes are lost
+            this.read(HttpInputStream.of(input), maxBodySize);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
     
-    private String readBody(InputStream in) throws IOException {
-        if (this.header.isChunkedTransfer()) {
-            return this.readBodyByChunkedTransfer(in);
-        } else {
-            return this.readBodyByContentLength(in);
-        }
-    }
-    
-    private String readBodyByChunkedTransfer(InputStream in) throws IOException {
-        StringBuilder body = new StringBuilder();
-        
-        int chunkSize = Integer.parseInt(IOUtil.readLine(in), 16);
-        
-        while (chunkSize != 0) {
-            byte[] buffer = new byte[chunkSize];
-            in.read(buffer);
-            
-            body.append(IOUtil.toString(buffer));
-            
-            IOUtil.readLine(in); // chunk-body �겗�쑌弱얇겓�걗�굥 CRLF �굮沃��겳繇쎼겙�걲
-            chunkSize = Integer.parseInt(org.web.labs.inside.jerry.was.status.IOUtil.readLine(in), 16);
-        }
-        
-        return body.toString();
+    /**
+     * An empty request to be filled by read(), e.g. one reused per connection.
+     */
+    HttpRequest() {
     }
     
-    private String readBodyByContentLength(InputStream in) throws IOException {
-        final int contentLength = this.header.getContentLength();
-        
-        if (contentLength <= 0) {
-            return null;
-        }
-        
-        byte[] buffer = new byte[contentLength];
-        in.read(buffer);
-        
-        return IOUtil.toString(buffer);
+    /**
+     * Read the next request header from the stream, replacing this one in place.
+     */
+    void read(HttpInputStream in, long maxBodySize) throws IOException {
+        this.header.parse(in);
+        this.body.reset(in, this.header, maxBodySize);
+        this.bodyText = null;
     }
     
     public String getHeaderText() {
         return this.header.getText();
     }
 
+    /**
+     * The body as a stream, read straight from the connection.
+     */
+    public RequestBody getBody() {
+        return this.body;
+    }
+
+    /**
+     * The whole body decoded as UTF-8, or null when there is none. Reads the
+     * body on first call; use getBody() for large or binary bodies.
+     */
     public String getBodyText() {
+        if (this.bodyText == null && !this.body.isFinished()) {
+            try {
+                this.bodyText = this.body.readText();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         return this.bodyText;
     }
 
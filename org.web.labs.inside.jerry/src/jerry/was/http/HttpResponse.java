@@ -3,60 +3,258 @@ package org.web.labs.inside.jerry.was.http;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Files;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Objects;
 
 import org.web.labs.inside.jerry.was.status.ContentType;
-import org.web.labs.inside.jerry.was.status.IOUtil;
+import org.web.labs.inside.jerry.was.status.HeaderName;
 import org.web.labs.inside.jerry.was.status.Status;
 
-import static org.web.labs.inside.jerry.was.status.Constant.*;
-
+/**
+ * HttpResponse - Status, headers and body of one response.
+ *
+ * Headers are kept in parallel arrays rather than one object each, and reset()
+ * clears a response for reuse, so a connection can send every response through
+ * the same instance.
+ */
 public class HttpResponse {
     
-    private final Status status;
-    private Map<String, String> headers = new HashMap<>();
+    // Bodies up to this size are copied into the response buffer and go out with the headers
+    private static final int SMALL_BODY_LIMIT = 16 * 1024;
+    private static final int INITIAL_HEADERS = 8;
+    
+    private static final byte[] HEADER_SEPARATOR = { ':', ' ' };
+    
+    private Status status;
+    // Per header: the HeaderName if known, the name as sent and the value
+    private HeaderName[] knownNames = new HeaderName[INITIAL_HEADERS];
+    private String[] names = new String[INITIAL_HEADERS];
+    private Object[] values = new Object[INITIAL_HEADERS];
+    private int headerCount = 0;
     private String body;
     private File bodyFile;
+    private ByteBuffer bodyBuffer;
+    private ResponseBody bodyWriter;
+    private byte[] encodedHeaders;
     
     public HttpResponse(Status status) {
+        this.reset(status);
+    }
+    
+    /**
+     * Clear headers and body and start a new response with the given status.
+     */
+    public HttpResponse reset(Status status) {
         Objects.requireNonNull(status);
         this.status = status;
+        Arrays.fill(this.values, 0, this.headerCount, null);
+        Arrays.fill(this.names, 0, this.headerCount, null);
+        Arrays.fill(this.knownNames, 0, this.headerCount, null);
+        this.headerCount = 0;
+        this.body = null;
+        this.bodyFile = null;
+        this.bodyBuffer = null;
+        this.bodyWriter = null;
+        this.encodedHeaders = null;
+        return this;
     }
 
     public void addHeader(String string, Object value) {
-        this.headers.put(string, value.toString());
+        HeaderName known = HeaderName.lookup(string);
+        if (known != null) {
+            this.addHeader(known, value);
+        } else {
+            this.putHeader(null, string, value);
+        }
+    }
+    
+    public void addHeader(HeaderName name, Object value) {
+        this.putHeader(name, name.toString(), value);
+    }
+    
+    private void putHeader(HeaderName known, String name, Object value) {
+        for (int i = 0; i < this.headerCount; i++) {
+            if (known != null ? this.knownNames[i] == known : this.names[i].equalsIgnoreCase(name)) {
+                this.values[i] = value;
+                return;
+            }
+        }
+        if (this.headerCount == this.names.length) {
+            this.knownNames = Arrays.copyOf(this.knownNames, this.headerCount * 2);
+            this.names = Arrays.copyOf(this.names, this.headerCount * 2);
+            this.values = Arrays.copyOf(this.values, this.headerCount * 2);
+        }
+        this.knownNames[this.headerCount] = known;
+        this.names[this.headerCount] = name;
+        this.values[this.headerCount] = value;
+        this.headerCount++;
     }
 
     public void setBody(String body) {
         this.body = body;
     }
+    
+    /**
+     * Use an already-encoded body, e.g. one held by StaticContentCache.
+     */
+    public void setBody(ByteBuffer body) {
+        this.bodyBuffer = body;
+    }
+    
+    /**
+     * Use a body that writes itself after the head, e.g. a ByteRangeBody.
+     */
+    public void setBody(ResponseBody body) {
+        this.bodyWriter = body;
+    }
+    
+    /**
+     * Append pre-encoded header lines (each terminated by CRLF) after the other headers.
+     */
+    public void addEncodedHeaders(byte[] headerLines) {
+        this.encodedHeaders = headerLines;
+    }
 
-    public void writeTo(OutputStream out) throws IOException {
-        IOUtil.println(out, "HTTP/1.1 " + this.status);
+    public Status getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Approximate size of the body, e.g. for a write deadline; String bodies are
+     * counted in chars rather than encoded bytes.
+     */
+    public long getBodyLength() {
+        if (this.bodyWriter != null) {
+            return this.bodyWriter.contentLength();
+        } else if (this.bodyFile != null) {
+            return this.bodyFile.length();
+        } else if (this.bodyBuffer != null) {
+            return this.bodyBuffer.remaining();
+        } else if (this.body != null) {
+            return this.body.length();
+        }
+        return 0;
+    }
+
+    public long writeTo(OutputStream out) throws IOException {
+        return this.writeTo(out, null);
+    }
+    
+    public long writeTo(OutputStream out, WritableByteChannel channel) throws IOException {
+        return this.writeTo(out, channel, new ResponseBuffer());
+    }
+    
+    /**
+     * Serialize status line, headers and small bodies into the buffer and write them
+     * with one call; file bodies then go straight from the file to the channel.
+     *
+     * @return number of bytes written, head and body
+     */
+    public long writeTo(OutputStream out, WritableByteChannel channel, ResponseBuffer buffer) throws IOException {
+        buffer.reset();
+        long written;
+        if (this.bodyWriter != null) {
+            long size = this.bodyWriter.contentLength();
+            this.writeHead(buffer, size);
+            written = buffer.writeTo(out) + size;
+            this.bodyWriter.writeTo(out, channel);
+        } else if (this.bodyFile != null) {
+            try (FileChannel file = FileChannel.open(this.bodyFile.toPath(), StandardOpenOption.READ)) {
+                // Size taken from the open channel so the header matches the bytes sent
+                long size = file.size();
+                this.writeHead(buffer, size);
+                written = buffer.writeTo(out) + size;
+                FileTransfer.transfer(file, 0, size, channel, out);
+            }
+        } else if (this.bodyBuffer != null) {
+            int size = this.bodyBuffer.remaining();
+            this.writeHead(buffer, size);
+            if (size <= SMALL_BODY_LIMIT) {
+                buffer.write(this.bodyBuffer);
+                written = buffer.writeTo(out);
+            } else {
+                written = buffer.writeTo(out) + size;
+                FileTransfer.writeFully(this.bodyBuffer, channel != null ? channel : Channels.newChannel(out));
+            }
+        } else if (this.body != null) {
+            int size = ResponseBuffer.utf8Length(this.body);
+            this.writeHead(buffer, size);
+            if (size <= SMALL_BODY_LIMIT) {
+                buffer.writeUtf8(this.body);
+                written = buffer.writeTo(out);
+            } else {
+                written = buffer.writeTo(out) + size;
+                out.write(this.body.getBytes(StandardCharsets.UTF_8));
+            }
+        } else {
+            this.writeHead(buffer, 0);
+            written = buffer.writeTo(out);
+        }
+        out.flush();
+        return written;
+    }
+    
+    /**
+     * Serialize the status line and headers into the buffer.
+     *
+     * @param contentLength body size, or -1 when the body is delimited otherwise
+     *                      (e.g. a Transfer-Encoding header added by the caller)
+     */
+    void writeHead(ResponseBuffer buffer, long contentLength) {
+        buffer.write(this.status.getStatusLineBytes());
         
-        this.headers.forEach((key, value) -> {
-            IOUtil.println(out, key + ": " + value);
-        });
+        for (int i = 0; i < this.headerCount; i++) {
+            if (this.knownNames[i] == HeaderName.CONTENT_LENGTH) {
+                continue; // always computed below
+            }
+            this.writeHeader(buffer, i);
+        }
         
-        if (this.body != null) {
-            IOUtil.println(out, "");
-            IOUtil.print(out, this.body);
-        } else if (this.bodyFile != null) {
-            IOUtil.println(out, "");
-            Files.copy(this.bodyFile.toPath(), out);
+        // Every response is delimited so the connection can be reused for the next request
+        if (this.status.allowsBody() && contentLength >= 0) {
+            buffer.write(HeaderName.CONTENT_LENGTH.getPrefixBytes())
+                  .writeDecimal(contentLength)
+                  .writeCrlf();
+        }
+        
+        if (this.encodedHeaders != null) {
+            buffer.write(this.encodedHeaders);
         }
+        
+        buffer.writeCrlf();
     }
 
     public void setBody(File file) {
         Objects.requireNonNull(file);
         this.bodyFile = file;
         
-        String fileName = this.bodyFile.getName();
-        String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+        this.addHeader(HeaderName.CONTENT_TYPE, ContentType.fromFileName(this.bodyFile.getName()));
+    }
+    
+    /**
+     * One header line; known names and ContentType values use their cached bytes.
+     */
+    private void writeHeader(ResponseBuffer buffer, int i) {
+        if (this.knownNames[i] != null) {
+            buffer.write(this.knownNames[i].getPrefixBytes());
+        } else {
+            buffer.writeUtf8(this.names[i]).write(HEADER_SEPARATOR);
+        }
         
-        this.addHeader("Content-Type", ContentType.toContentType(extension));
+        Object value = this.values[i];
+        if (value instanceof ContentType) {
+            buffer.write(((ContentType) value).getBytes());
+        } else if (value instanceof CharSequence) {
+            buffer.writeUtf8((CharSequence) value);
+        } else {
+            buffer.writeUtf8(value.toString());
+        }
+        buffer.writeCrlf();
     }
 }
@@ -0,0 +1,258 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.web.labs.inside.jerry.was.toyservlet.ToyFile;
+
+/**
+ * MultipartForm - A multipart/form-data body, parsed while it streams in.
+ *
+ * Parts with a filename are written straight to temporary files through a
+ * FileChannel; other parts are form fields, kept in memory up to a size limit.
+ * Nothing is decoded as text except field values, so binary uploads arrive
+ * intact. Closing the form deletes the temporary files.
+ */
+public class MultipartForm implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(MultipartForm.class.getName());
+
+    /** Largest form field kept in memory, in bytes. */
+    public static final int DEFAULT_MAX_FIELD_SIZE = 64 * 1024;
+
+    private static final int MAX_PARTS = 1000;
+
+    private final Map<String, String> fields = new LinkedHashMap<>();
+    private final List<ToyFile> files = new ArrayList<>();
+
+    private MultipartForm() {
+    }
+
+    /**
+     * @return the boundary if the Content-Type is multipart/form-data, else null
+     */
+    public static String boundary(String contentType) {
+        if (contentType == null
+                || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+            return null;
+        }
+        String boundary = parameter(contentType, "boundary");
+        return boundary != null && !boundary.isEmpty() && boundary.length() <= 70 ? boundary : null;
+    }
+
+    /**
+     * Read the whole body. On failure, files written so far are deleted.
+     *
+     * @param tempDir directory for uploaded files
+     * @throws MalformedPartException if the body is not valid multipart
+     * @throws PayloadTooLargeException if a field is over maxFieldSize, or the body over its limit
+     */
+    public static MultipartForm parse(InputStream body, String boundary, Path tempDir, int maxFieldSize)
+            throws IOException {
+        MultipartForm form = new MultipartForm();
+        try {
+            form.read(new MultipartReader(body, boundary), tempDir, maxFieldSize);
+            return form;
+        } catch (IOException | RuntimeException e) {
+            form.close();
+            throw e;
+        }
+    }
+
+    private void read(MultipartReader reader, Path tempDir, int maxFieldSize) throws IOException {
+        // Preamble before the first boundary is ignored
+        reader.readPart((b, off, len) -> { });
+        int parts = 0;
+        while (reader.nextPart()) {
+            if (++parts > MAX_PARTS) {
+                throw new MalformedPartException("More than " + MAX_PARTS + " parts");
+            }
+            String disposition = null;
+            String contentType = null;
+            String line;
+            while (!(line = reader.readLine()).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon <= 0) {
+                    throw new MalformedPartException("Invalid part header: " + line);
+                }
+                String name = line.substring(0, colon).trim();
+                if (name.equalsIgnoreCase("Content-Disposition")) {
+                    disposition = line.substring(colon + 1).trim();
+                } else if (name.equalsIgnoreCase("Content-Type")) {
+                    contentType = line.substring(colon + 1).trim();
+                }
+            }
+            String fieldName = disposition != null ? parameter(disposition, "name") : null;
+            if (fieldName == null) {
+                throw new MalformedPartException("Part without a form-data name");
+            }
+            String fileName = parameter(disposition, "filename");
+            if (fileName != null) {
+                this.spool(reader, tempDir, fieldName, fileName, contentType);
+            } else {
+                String value = readField(reader, maxFieldSize);
+                this.fields.putIfAbsent(fieldName, value);
+            }
+        }
+    }
+
+    private void spool(MultipartReader reader, Path tempDir, String fieldName, String fileName,
+            String contentType) throws IOException {
+        Path path = Files.createTempFile(tempDir, "upload-", ".tmp");
+        Part part = new Part(fieldName, fileName, contentType, path);
+        // Registered before writing so a failed upload is still deleted
+        this.files.add(part);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            reader.readPart((b, off, len) -> {
+                ByteBuffer data = ByteBuffer.wrap(b, off, len);
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                part.size += len;
+            });
+        }
+    }
+
+    private static String readField(MultipartReader reader, int maxFieldSize) throws IOException {
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        reader.readPart((b, off, len) -> {
+            if (value.size() + len > maxFieldSize) {
+                throw new PayloadTooLargeException(maxFieldSize);
+            }
+            value.write(b, off, len);
+        });
+        return new String(value.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Value of a ';'-separated header parameter, unquoted, or null if absent.
+     */
+    static String parameter(String header, String name) {
+        int i = header.indexOf(';');
+        while (i >= 0 && i < header.length()) {
+            int start = i + 1;
+            while (start < header.length() && header.charAt(start) == ' ') {
+                start++;
+            }
+            int equals = header.indexOf('=', start);
+            if (equals < 0) {
+                return null;
+            }
+            String key = header.substring(start, equals).trim();
+            StringBuilder value = new StringBuilder();
+            int end = equals + 1;
+            if (end < header.length() && header.charAt(end) == '"') {
+                for (end++; end < header.length() && header.charAt(end) != '"'; end++) {
+                    char c = header.charAt(end);
+                    if (c == '\\' && end + 1 < header.length()) {
+                        c = header.charAt(++end);
+                    }
+                    value.append(c);
+                }
+                end = header.indexOf(';', end);
+            } else {
+                int semicolon = header.indexOf(';', end);
+                value.append(header, end, semicolon >= 0 ? semicolon : header.length());
+                end = semicolon;
+            }
+            if (key.equalsIgnoreCase(name)) {
+                return value.toString().trim();
+            }
+            i = end;
+        }
+        return null;
+    }
+
+    /**
+     * Form fields in the order sent; a repeated field keeps its first value.
+     */
+    public Map<String, String> getFields() {
+        return Collections.unmodifiableMap(this.fields);
+    }
+
+    public List<ToyFile> getFiles() {
+        return Collections.unmodifiableList(this.files);
+    }
+
+    /**
+     * Delete the temporary files.
+     */
+    @Override
+    public void close() {
+        for (ToyFile file : this.files) {
+            try {
+                Files.deleteIfExists(file.getPath());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not delete upload " + file.getPath(), e);
+            }
+        }
+        this.files.clear();
+    }
+
+    /**
+     * A multipart body that cannot be parsed.
+     */
+    public static class MalformedPartException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public MalformedPartException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Part implements ToyFile {
+        private final String fieldName;
+        private final String fileName;
+        private final String contentType;
+        private final Path path;
+        private long size = 0;
+
+        Part(String fieldName, String fileName, String contentType, Path path) {
+            this.fieldName = fieldName;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.path = path;
+        }
+
+        @Override
+        public String getFieldName() {
+            return this.fieldName;
+        }
+
+        @Override
+        public String getFileName() {
+            return this.fileName;
+        }
+
+        @Override
+        public String getContentType() {
+            return this.contentType;
+        }
+
+        @Override
+        public long getSize() {
+            return this.size;
+        }
+
+        @Override
+        public Path getPath() {
+            return this.path;
+        }
+    }
+}
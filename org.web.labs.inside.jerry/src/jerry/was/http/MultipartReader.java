@@ -0,0 +1,156 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MultipartReader - Splits a multipart body on its boundary while streaming.
+ *
+ * Part content is handed to a sink in buffer-sized pieces as it arrives; only
+ * the last delimiter-length bytes are held back, in case they are the start of
+ * a boundary split across two reads.
+ */
+class MultipartReader {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_LINE_LENGTH = 8 * 1024;
+
+    /**
+     * Receives the content of one part.
+     */
+    interface Sink {
+        void write(byte[] b, int off, int len) throws IOException;
+    }
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int pos = 0;
+    private int limit;
+
+    MultipartReader(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        this.buffer = new byte[Math.max(BUFFER_SIZE, this.delimiter.length * 2)];
+        // The first boundary has no CRLF before it; pretend it has, so every delimiter looks the same
+        this.buffer[0] = '\r';
+        this.buffer[1] = '\n';
+        this.limit = 2;
+    }
+
+    /**
+     * Pass everything up to the next delimiter to the sink and consume the delimiter.
+     *
+     * @throws MultipartForm.MalformedPartException if the body ends first
+     */
+    void readPart(Sink sink) throws IOException {
+        while (true) {
+            int found = this.indexOfDelimiter();
+            if (found >= 0) {
+                if (found > this.pos) {
+                    sink.write(this.buffer, this.pos, found - this.pos);
+                }
+                this.pos = found + this.delimiter.length;
+                return;
+            }
+            int safe = this.limit - (this.delimiter.length - 1);
+            if (safe > this.pos) {
+                sink.write(this.buffer, this.pos, safe - this.pos);
+                this.pos = safe;
+            }
+            if (!this.fill()) {
+                throw new MultipartForm.MalformedPartException("Multipart body ended before the closing boundary");
+            }
+        }
+    }
+
+    /**
+     * Read what follows a delimiter: "--" for the last one, else the line end.
+     *
+     * @return false after the closing delimiter
+     */
+    boolean nextPart() throws IOException {
+        this.require(2);
+        if (this.buffer[this.pos] == '-' && this.buffer[this.pos + 1] == '-') {
+            this.pos += 2;
+            return false;
+        }
+        // Transport padding (linear whitespace) may precede the CRLF
+        this.readLine();
+        return true;
+    }
+
+    /**
+     * Read one CRLF-terminated header line, without the CRLF.
+     */
+    String readLine() throws IOException {
+        int scanned = this.pos;
+        while (true) {
+            for (int i = scanned; i + 1 < this.limit; i++) {
+                if (this.buffer[i] == '\r' && this.buffer[i + 1] == '\n') {
+                    String line = new String(this.buffer, this.pos, i - this.pos, StandardCharsets.UTF_8);
+                    this.pos = i + 2;
+                    return line;
+                }
+            }
+            if (this.limit - this.pos > MAX_LINE_LENGTH) {
+                throw new MultipartForm.MalformedPartException("Part header line too long");
+            }
+            scanned = Math.max(this.pos, this.limit - 1);
+            int shift = this.pos;
+            if (!this.fill()) {
+                throw new MultipartForm.MalformedPartException("Multipart body ended inside part headers");
+            }
+            scanned -= shift;
+        }
+    }
+
+    private void require(int count) throws IOException {
+        while (this.limit - this.pos < count) {
+            if (!this.fill()) {
+                throw new MultipartForm.MalformedPartException("Multipart body ended after a boundary");
+            }
+        }
+    }
+
+    /**
+     * Move unread bytes to the front and read more after them.
+     *
+     * @return false at the end of the body
+     */
+    private boolean fill() throws IOException {
+        if (this.pos > 0) {
+            System.arraycopy(this.buffer, this.pos, this.buffer, 0, this.limit - this.pos);
+            this.limit -= this.pos;
+            this.pos = 0;
+        }
+        if (this.limit == this.buffer.length) {
+            throw new MultipartForm.MalformedPartException("Part header line too long");
+        }
+        int n = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        if (n < 0) {
+            return false;
+        }
+        this.limit += n;
+        return true;
+    }
+
+    private int indexOfDelimiter() {
+        byte first = this.delimiter[0];
+        int last = this.limit - this.delimiter.length;
+        outer:
+        for (int i = this.pos; i <= last; i++) {
+            if (this.buffer[i] != first) {
+                continue;
+            }
+            for (int j = 1; j < this.delimiter.length; j++) {
+                if (this.buffer[i + j] != this.delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
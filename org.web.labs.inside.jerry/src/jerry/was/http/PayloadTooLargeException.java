@@ -0,0 +1,15 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a request body is larger than the configured limit.
+ */
+public class PayloadTooLargeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PayloadTooLargeException(long limit) {
+        super("Request body exceeds " + limit + " bytes");
+    }
+}
@@ -0,0 +1,244 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.web.labs.inside.jerry.was.status.Constant;
+import org.web.labs.inside.jerry.was.status.Status;
+
+/**
+ * RequestBody - The body of one request, read lazily from the connection.
+ *
+ * Delimited by Content-Length or decoded from chunked transfer encoding; chunk
+ * boundaries may fall anywhere in the reads from the socket. Reading stops at
+ * the end of the body, so the next pipelined request is left untouched, and
+ * fails with PayloadTooLargeException once more than the limit has been seen.
+ */
+public class RequestBody extends InputStream {
+
+    private HttpInputStream in;
+    private boolean chunked;
+    private long limit;
+
+    // Bytes left in the body (Content-Length) or in the current chunk
+    private long remaining;
+    private long consumed;
+    private boolean finished;
+    // Where to send "100 Continue" on first read, while the client holds the body back
+    private OutputStream continueOut;
+
+    /**
+     * @param limit largest body accepted, in bytes
+     */
+    public RequestBody(HttpInputStream in, HttpHeader header, long limit) throws BadRequestException {
+        this.reset(in, header, limit);
+    }
+
+    /**
+     * Start over with the body of the next request on the stream.
+     */
+    void reset(HttpInputStream in, HttpHeader header, long limit) throws BadRequestException {
+        this.in = in;
+        this.limit = limit;
+        this.chunked = header.isChunkedTransfer();
+        this.consumed = 0;
+        this.continueOut = null;
+        if (this.chunked) {
+            this.remaining = 0;
+            this.finished = false;
+        } else {
+            this.remaining = header.getContentLengthLong();
+            this.finished = this.remaining <= 0;
+        }
+    }
+
+    /**
+     * The client sent "Expect: 100-continue": send the interim response when the
+     * body is first read, so a body that is refused or never needed is not sent.
+     */
+    public void expectContinue(OutputStream out) {
+        this.continueOut = this.finished ? null : out;
+    }
+
+    /**
+     * Whether the declared Content-Length is over the limit, so the body can be
+     * refused before any of it is read. Chunked bodies are checked while reading.
+     */
+    public boolean isDeclaredTooLarge() {
+        return !this.chunked && this.consumed + this.remaining > this.limit;
+    }
+
+    /**
+     * An empty body, for requests that carry none.
+     */
+    public static RequestBody empty(HttpInputStream in) {
+        return new RequestBody(in);
+    }
+
+    private RequestBody(HttpInputStream in) {
+        this.in = in;
+        this.chunked = false;
+        this.limit = 0;
+        this.remaining = 0;
+        this.finished = true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return this.read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0 || this.finished) {
+            return len == 0 ? 0 : -1;
+        }
+        if (this.isDeclaredTooLarge()) {
+            throw new PayloadTooLargeException(this.limit);
+        }
+        if (this.continueOut != null) {
+            this.sendContinue();
+        }
+        if (this.remaining == 0 && this.chunked) {
+            this.nextChunk();
+            if (this.finished) {
+                return -1;
+            }
+        }
+        int n = this.in.read(b, off, (int) Math.min(len, this.remaining));
+        if (n < 0) {
+            throw new EOFException("Request body truncated");
+        }
+        this.remaining -= n;
+        this.consumed += n;
+        if (this.remaining == 0) {
+            if (this.chunked) {
+                this.in.readLine(); // CRLF after the chunk data
+            } else {
+                this.finished = true;
+            }
+        }
+        return n;
+    }
+
+    private void sendContinue() throws IOException {
+        OutputStream out = this.continueOut;
+        this.continueOut = null;
+        out.write(Status.CONTINUE.getStatusLineBytes());
+        out.write(Constant.CRLF.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Read the next chunk-size line; the last (zero) chunk is followed by trailers.
+     */
+    private void nextChunk() throws IOException {
+        String line = this.in.readLine();
+        int extension = line.indexOf(';');
+        String size = (extension >= 0 ? line.substring(0, extension) : line).trim();
+        long chunkSize;
+        try {
+            chunkSize = Long.parseLong(size, 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid chunk size: " + line);
+        }
+        if (chunkSize < 0) {
+            throw new IOException("Invalid chunk size: " + line);
+        }
+        if (chunkSize == 0) {
+            // Trailer section ends with an empty line; trailers are not used
+            while (!this.in.readLine().isEmpty()) {
+            }
+            this.finished = true;
+            return;
+        }
+        if (this.consumed + chunkSize > this.limit) {
+            throw new PayloadTooLargeException(this.limit);
+        }
+        this.remaining = chunkSize;
+    }
+
+    @Override
+    public int available() {
+        return this.finished ? 0 : (int) Math.min(Integer.MAX_VALUE, this.remaining);
+    }
+
+    /**
+     * Bytes of body data read so far.
+     */
+    public long getConsumed() {
+        return this.consumed;
+    }
+
+    public boolean isFinished() {
+        return this.finished;
+    }
+
+    /**
+     * The body as a channel, e.g. for FileChannel.transferFrom.
+     */
+    public ReadableByteChannel getChannel() {
+        return Channels.newChannel(this);
+    }
+
+    /**
+     * Read the rest of the body into a String. Buffers the whole body in memory;
+     * prefer reading the stream.
+     */
+    public String readText() throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = this.read(buffer, 0, buffer.length)) > 0) {
+            text.write(buffer, 0, n);
+        }
+        return new String(text.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read and drop the rest of the body, so the connection is positioned at the
+     * next request.
+     *
+     * @return false, leaving the body unfinished, if more than maxBytes would have to be
+     *         skipped or the client is still waiting for "100 Continue"
+     */
+    public boolean skipRemaining(long maxBytes) throws IOException {
+        if (this.continueOut != null) {
+            // The client may or may not send the body after all; only closing is safe
+            return false;
+        }
+        long skipped = 0;
+        byte[] buffer = null;
+        while (!this.finished) {
+            if (!this.chunked && this.remaining > maxBytes - skipped) {
+                return false;
+            }
+            if (buffer == null) {
+                buffer = new byte[(int) Math.min(8192, Math.max(1, maxBytes))];
+            }
+            int n = this.read(buffer, 0, buffer.length);
+            if (n < 0) {
+                break;
+            }
+            skipped += n;
+            if (skipped > maxBytes) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Nothing to release: the connection outlives the body.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,52 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.web.labs.inside.jerry.was.status.Status;
+
+/**
+ * RequestContext - Reusable request and response objects of one connection.
+ *
+ * Every request on the connection is parsed into the same HttpRequest and
+ * answered through the same HttpResponse, each reset in place, and serialized
+ * into the same ResponseBuffer. Only one request is in progress at a time, so
+ * nothing here is shared between threads even when a request is suspended and
+ * resumed on another worker.
+ */
+public class RequestContext {
+
+    private final HttpInputStream in;
+    private final HttpRequest request = new HttpRequest();
+    private final HttpResponse response = new HttpResponse(Status.OK);
+    private final ResponseBuffer responseBuffer = new ResponseBuffer();
+
+    public RequestContext(InputStream in) {
+        this.in = HttpInputStream.of(in);
+    }
+
+    /**
+     * Read the next request header, replacing the previous request.
+     *
+     * @param maxBodySize largest body accepted, in bytes
+     */
+    public HttpRequest readRequest(long maxBodySize) throws IOException {
+        this.request.read(this.in, maxBodySize);
+        return this.request;
+    }
+
+    /**
+     * The connection's response, cleared and set to the given status.
+     */
+    public HttpResponse response(Status status) {
+        return this.response.reset(status);
+    }
+
+    public HttpInputStream getInputStream() {
+        return this.in;
+    }
+
+    public ResponseBuffer getResponseBuffer() {
+        return this.responseBuffer;
+    }
+}
@@ -0,0 +1,132 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RequestPrefix - The first bytes of a new connection, read without blocking so
+ * the request can be classified before a worker is chosen.
+ *
+ * The bytes are handed back in front of the socket's stream when the
+ * connection is served, so nothing is lost to the peek.
+ */
+final class RequestPrefix {
+
+    // Enough for the request line of any control-plane path
+    static final int CAPACITY = 256;
+
+    private final byte[] buf = new byte[CAPACITY];
+    private int length = 0;
+    private boolean endOfStream = false;
+
+    /**
+     * Read what has already arrived on a blocking socket, leaving it blocking.
+     */
+    void peek(Socket socket) throws IOException {
+        SocketChannel channel = socket.getChannel();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        try {
+            this.readAvailable(channel);
+        } finally {
+            channel.configureBlocking(true);
+        }
+    }
+
+    /**
+     * Read what has arrived on a non-blocking channel.
+     */
+    void readAvailable(SocketChannel channel) throws IOException {
+        if (this.length == CAPACITY) {
+            return;
+        }
+        int n = channel.read(ByteBuffer.wrap(this.buf, this.length, CAPACITY - this.length));
+        if (n < 0) {
+            this.endOfStream = true;
+        } else {
+            this.length += n;
+        }
+    }
+
+    /**
+     * Whether waiting longer would not tell more: the request target has ended,
+     * the buffer is full or the client closed.
+     */
+    boolean isComplete() {
+        return this.endOfStream || this.length == CAPACITY || this.targetEnd() >= 0;
+    }
+
+    boolean isEmpty() {
+        return this.length == 0;
+    }
+
+    boolean isEndOfStream() {
+        return this.endOfStream;
+    }
+
+    /**
+     * Treat the connection as closed, e.g. after a failed read.
+     */
+    void markEndOfStream() {
+        this.endOfStream = true;
+    }
+
+    /**
+     * Path of the request line, without the query; null if it has not fully arrived.
+     */
+    String getPath() {
+        int start = this.targetStart();
+        int end = this.targetEnd();
+        if (end < 0) {
+            return null;
+        }
+        for (int i = start; i < end; i++) {
+            if (this.buf[i] == '?') {
+                end = i;
+                break;
+            }
+        }
+        return new String(this.buf, start, end - start, StandardCharsets.US_ASCII);
+    }
+
+    private int targetStart() {
+        for (int i = 0; i < this.length; i++) {
+            if (this.buf[i] == ' ') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private int targetEnd() {
+        int start = this.targetStart();
+        if (start < 0) {
+            return -1;
+        }
+        for (int i = start; i < this.length; i++) {
+            byte b = this.buf[i];
+            if (b == ' ' || b == '\r' || b == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The socket's stream with the peeked bytes in front.
+     */
+    InputStream prepend(InputStream in) {
+        if (this.length == 0) {
+            return in;
+        }
+        return new SequenceInputStream(new ByteArrayInputStream(this.buf, 0, this.length), in);
+    }
+}
@@ -0,0 +1,28 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Thrown when a client is too slow sending a request: the header did not arrive
+ * within its deadline, or the body stalled between reads.
+ */
+public class RequestTimeoutException extends SocketTimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The part of the request that was being read.
+     */
+    public enum Phase { HEADER, BODY }
+
+    private final Phase phase;
+
+    public RequestTimeoutException(Phase phase, long timeoutMillis) {
+        super("Request " + phase.name().toLowerCase() + " not received within " + timeoutMillis + " ms");
+        this.phase = phase;
+    }
+
+    public Phase getPhase() {
+        return this.phase;
+    }
+}
@@ -0,0 +1,19 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * ResponseBody - A body whose length is known up front and which writes itself
+ * after the response head, e.g. selected byte ranges of a file.
+ */
+public interface ResponseBody {
+    
+    long contentLength();
+    
+    /**
+     * @param channel socket channel for zero-copy transfers, or null
+     */
+    void writeTo(OutputStream out, WritableByteChannel channel) throws IOException;
+}
@@ -0,0 +1,165 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * ResponseBuffer - Reusable byte buffer a response is serialized into before
+ * being written to the socket with a single write.
+ *
+ * One instance belongs to a connection and is reset between responses; it
+ * shrinks back to its initial size if an unusually large response grew it.
+ */
+public class ResponseBuffer {
+
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final byte[] CRLF_BYTES = { '\r', '\n' };
+
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int count = 0;
+
+    public void reset() {
+        if (this.buf.length > MAX_RETAINED_CAPACITY) {
+            this.buf = new byte[INITIAL_CAPACITY];
+        }
+        this.count = 0;
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    public ResponseBuffer write(byte[] bytes) {
+        return this.write(bytes, 0, bytes.length);
+    }
+
+    public ResponseBuffer write(byte[] bytes, int off, int len) {
+        this.ensureCapacity(len);
+        System.arraycopy(bytes, off, this.buf, this.count, len);
+        this.count += len;
+        return this;
+    }
+
+    /**
+     * Copy the remaining bytes of the buffer without moving its position.
+     */
+    public ResponseBuffer write(ByteBuffer bytes) {
+        int len = bytes.remaining();
+        this.ensureCapacity(len);
+        bytes.duplicate().get(this.buf, this.count, len);
+        this.count += len;
+        return this;
+    }
+
+    public ResponseBuffer writeByte(int b) {
+        this.ensureCapacity(1);
+        this.buf[this.count++] = (byte) b;
+        return this;
+    }
+
+    public ResponseBuffer writeCrlf() {
+        return this.write(CRLF_BYTES);
+    }
+
+    public ResponseBuffer writeDecimal(long value) {
+        if (value == 0) {
+            return this.writeByte('0');
+        }
+        if (value < 0) {
+            this.writeByte('-');
+            value = -value;
+        }
+        int digits = 0;
+        for (long v = value; v > 0; v /= 10) {
+            digits++;
+        }
+        this.ensureCapacity(digits);
+        for (int i = this.count + digits - 1; i >= this.count; i--) {
+            this.buf[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        this.count += digits;
+        return this;
+    }
+
+    /**
+     * Encode a string as UTF-8 straight into the buffer.
+     */
+    public ResponseBuffer writeUtf8(CharSequence s) {
+        int len = s.length();
+        this.ensureCapacity(len);
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                this.buf[this.count++] = (byte) c;
+            } else {
+                // Room for this character plus the rest of the string as ASCII
+                this.ensureCapacity(4 + (len - i));
+                if (c < 0x800) {
+                    this.buf[this.count++] = (byte) (0xc0 | (c >> 6));
+                    this.buf[this.count++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    this.buf[this.count++] = (byte) (0xf0 | (cp >> 18));
+                    this.buf[this.count++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    this.buf[this.count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    this.buf[this.count++] = (byte) (0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    this.buf[this.count++] = '?'; // unpaired surrogate, same as String.getBytes
+                } else {
+                    this.buf[this.count++] = (byte) (0xe0 | (c >> 12));
+                    this.buf[this.count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    this.buf[this.count++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Number of bytes writeUtf8 will produce for the string.
+     */
+    public static int utf8Length(CharSequence s) {
+        int len = s.length();
+        int bytes = len;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    bytes += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Write everything buffered with one call and reset.
+     *
+     * @return number of bytes written
+     */
+    public int writeTo(OutputStream out) throws IOException {
+        int written = this.count;
+        if (written > 0) {
+            out.write(this.buf, 0, written);
+        }
+        this.reset();
+        return written;
+    }
+
+    private void ensureCapacity(int extra) {
+        int required = this.count + extra;
+        if (required > this.buf.length) {
+            this.buf = Arrays.copyOf(this.buf, Math.max(required, this.buf.length * 2));
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ResponseCache - Opt-in cache of servlet responses, keyed by servlet name and
+ * normalized query parameters.
+ *
+ * Only GET responses of servlets given a TTL are cached. Entries hold the
+ * encoded entity headers and body (plus a gzip variant when the body is large
+ * enough), so a hit is written without running the servlet or encoding anything.
+ *
+ * The byte budget is managed W-TinyLFU style: new entries enter a small LRU
+ * window; when the window overflows, its oldest entry is admitted into the main
+ * area only if a frequency sketch says it is used more often than the entry it
+ * would displace. The main area is a segmented LRU, so entries hit again while
+ * on probation move to the protected segment and one-off requests cannot flush
+ * the popular ones.
+ */
+public class ResponseCache {
+
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+    // Guess at the average entry, to size the frequency sketch
+    private static final int TYPICAL_ENTRY_BYTES = 4096;
+
+    private final long maxBytes;
+    private final long windowMaxBytes;
+    private final long protectedMaxBytes;
+    private final long maxEntryBytes;
+    private final Map<String, Long> ttlNanos = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Segment window = new Segment();
+    private final Segment probation = new Segment();
+    private final Segment protectedSegment = new Segment();
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public ResponseCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public ResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.windowMaxBytes = Math.max(1, maxBytes * WINDOW_PERCENT / 100);
+        this.protectedMaxBytes = (maxBytes - this.windowMaxBytes) * PROTECTED_PERCENT / 100;
+        this.maxEntryBytes = maxBytes / 8;
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(64, maxBytes / TYPICAL_ENTRY_BYTES)));
+    }
+
+    /**
+     * Cache the servlet's responses for the given time; 0 stops caching it.
+     */
+    public void setTtl(String servletName, long ttlMillis) {
+        if (ttlMillis > 0) {
+            this.ttlNanos.put(servletName, TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+        } else {
+            this.ttlNanos.remove(servletName);
+        }
+    }
+
+    public boolean isCacheable(String servletName) {
+        return !this.ttlNanos.isEmpty() && this.ttlNanos.containsKey(servletName);
+    }
+
+    /**
+     * Cache key: servlet name and query parameters sorted by name, so
+     * ?a=1&b=2 and ?b=2&a=1 share an entry.
+     */
+    public static String key(String servletName, Map<String, String> queryParams) {
+        if (queryParams.isEmpty()) {
+            return servletName;
+        }
+        StringBuilder key = new StringBuilder(servletName);
+        char separator = '?';
+        for (Map.Entry<String, String> param : new TreeMap<>(queryParams).entrySet()) {
+            key.append(separator).append(param.getKey()).append('=').append(param.getValue());
+            separator = '&';
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the live entry, or null on a miss
+     */
+    public synchronized Entry get(String key) {
+        this.sketch.increment(key);
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            this.misses.increment();
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt >= 0) {
+            this.remove(entry);
+            this.misses.increment();
+            return null;
+        }
+
+        if (entry.segment == this.probation) {
+            this.probation.remove(entry);
+            this.protectedSegment.add(entry);
+            // Overflow of the protected segment goes back on probation
+            while (this.protectedSegment.bytes > this.protectedMaxBytes) {
+                Entry demoted = this.protectedSegment.eldest();
+                this.protectedSegment.remove(demoted);
+                this.probation.add(demoted);
+            }
+        } else {
+            entry.segment.touch(entry);
+        }
+        this.hits.increment();
+        return entry;
+    }
+
+    /**
+     * Store a response for the servlet the key belongs to.
+     *
+     * @param headers   encoded header lines, each ending in CRLF
+     * @param gzipBody  compressed body, or null when it is not worth compressing
+     */
+    public Entry put(String key, String servletName, byte[] headers, byte[] body, byte[] gzipBody) {
+        Long ttl = this.ttlNanos.get(servletName);
+        if (ttl == null) {
+            return null;
+        }
+        Entry entry = new Entry(key, headers, body, gzipBody, System.nanoTime() + ttl);
+        if (entry.weight > this.maxEntryBytes) {
+            this.rejections.increment();
+            return entry;
+        }
+
+        synchronized (this) {
+            Entry previous = this.entries.get(key);
+            if (previous != null) {
+                this.remove(previous);
+            }
+            this.entries.put(key, entry);
+            this.window.add(entry);
+            while (this.window.bytes > this.windowMaxBytes && this.window.size() > 0) {
+                Entry candidate = this.window.eldest();
+                this.window.remove(candidate);
+                this.admit(candidate);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Move an entry leaving the window into the main area if it is used more
+     * often than each entry it would push out; otherwise drop it.
+     */
+    private void admit(Entry candidate) {
+        long mainMaxBytes = this.maxBytes - this.windowMaxBytes;
+        while (this.probation.bytes + this.protectedSegment.bytes + candidate.weight > mainMaxBytes) {
+            Entry victim = this.probation.size() > 0 ? this.probation.eldest() : this.protectedSegment.eldest();
+            if (victim == null) {
+                break;
+            }
+            boolean expired = System.nanoTime() - victim.expiresAt >= 0;
+            if (!expired && this.sketch.frequency(candidate.key) <= this.sketch.frequency(victim.key)) {
+                this.entries.remove(candidate.key);
+                this.rejections.increment();
+                return;
+            }
+            this.remove(victim);
+            this.evictions.increment();
+        }
+        this.probation.add(candidate);
+    }
+
+    private void remove(Entry entry) {
+        entry.segment.remove(entry);
+        this.entries.remove(entry.key);
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.window.clear();
+        this.probation.clear();
+        this.protectedSegment.clear();
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Responses not stored because they were too large or used too rarely.
+     */
+    public long getRejectionCount() {
+        return this.rejections.sum();
+    }
+
+    public synchronized long getTotalBytes() {
+        return this.window.bytes + this.probation.bytes + this.protectedSegment.bytes;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * One cached response; immutable apart from its segment.
+     */
+    public static final class Entry {
+        private final String key;
+        private final byte[] headers;
+        private final ByteBuffer body;
+        private final ByteBuffer gzipBody;
+        private final long expiresAt;
+        private final long weight;
+        private Segment segment;
+
+        Entry(String key, byte[] headers, byte[] body, byte[] gzipBody, long expiresAt) {
+            this.key = key;
+            this.headers = headers;
+            this.body = ByteBuffer.wrap(body).asReadOnlyBuffer();
+            this.gzipBody = gzipBody != null ? ByteBuffer.wrap(gzipBody).asReadOnlyBuffer() : null;
+            this.expiresAt = expiresAt;
+            this.weight = key.length() + headers.length + body.length + (gzipBody != null ? gzipBody.length : 0);
+        }
+
+        public byte[] getHeaders() {
+            return this.headers;
+        }
+
+        /**
+         * A view of the body for one response.
+         */
+        public ByteBuffer getBody() {
+            return this.body.duplicate();
+        }
+
+        /**
+         * A view of the gzip-compressed body, or null when there is none.
+         */
+        public ByteBuffer getGzipBody() {
+            return this.gzipBody != null ? this.gzipBody.duplicate() : null;
+        }
+    }
+
+    /**
+     * Entries in LRU order with their total weight.
+     */
+    private static final class Segment {
+        private final LinkedHashMap<String, Entry> order = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes = 0;
+
+        void add(Entry entry) {
+            entry.segment = this;
+            this.order.put(entry.key, entry);
+            this.bytes += entry.weight;
+        }
+
+        void remove(Entry entry) {
+            if (this.order.remove(entry.key) != null) {
+                this.bytes -= entry.weight;
+            }
+        }
+
+        void touch(Entry entry) {
+            this.order.get(entry.key);
+        }
+
+        Entry eldest() {
+            Iterator<Entry> it = this.order.values().iterator();
+            return it.hasNext() ? it.next() : null;
+        }
+
+        int size() {
+            return this.order.size();
+        }
+
+        void clear() {
+            this.order.clear();
+            this.bytes = 0;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.web.labs.inside.jerry.was.http;
+
+/**
+ * RouteMatch - Result of a Router lookup: the route's handler and target,
+ * plus parameter values as offsets into the request path.
+ *
+ * @param <H> handler type
+ */
+public final class RouteMatch<H> {
+
+    private final Router.Route<H> route;
+    private final String path;
+    private final int[] params;
+
+    RouteMatch(Router.Route<H> route, String path, int[] params) {
+        this.route = route;
+        this.path = path;
+        this.params = params;
+    }
+
+    public H getHandler() {
+        return this.route.handler;
+    }
+
+    /**
+     * Object registered with the route, e.g. a servlet instance, or null.
+     */
+    public Object getTarget() {
+        return this.route.target;
+    }
+
+    /**
+     * Pattern the route was registered with, e.g. "/servlet/{name}"; bounded, so usable as a metric label.
+     */
+    public String getPattern() {
+        return this.route.pattern;
+    }
+
+    /**
+     * @return the path segment captured by {name}, or null if the route has no such parameter
+     */
+    public String getParam(String name) {
+        String[] names = this.route.paramNames;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name) && this.params != null && i * 2 + 1 < this.params.length) {
+                return this.path.substring(this.params[i * 2], this.params[i * 2 + 1]);
+            }
+        }
+        return null;
+    }
+}
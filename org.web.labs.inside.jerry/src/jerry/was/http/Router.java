@@ -0,0 +1,254 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Router - Request path to handler lookup, compiled once into a segment trie.
+ *
+ * Patterns are split on '/' and each segment is one of:
+ * <ul>
+ * <li>a literal, e.g. {@code /health}</li>
+ * <li>a parameter, e.g. {@code /servlet/{name}}, matching any non-empty segment</li>
+ * <li>a trailing {@code *}, e.g. {@code /static/*}, matching the rest of the path</li>
+ * </ul>
+ * A literal match wins over a parameter, and both win over a prefix; among
+ * prefixes the longest wins. Matching walks the path by index and compares
+ * segments in place, so no substrings are created; parameter values are only
+ * materialized when {@link RouteMatch#getParam(String)} is called.
+ *
+ * Each route carries a handler and an optional target object (e.g. the servlet
+ * instance), so one lookup yields both.
+ *
+ * @param <H> handler type
+ */
+public final class Router<H> {
+
+    private final Node<H> root;
+    private final int maxParams;
+
+    private Router(Node<H> root, int maxParams) {
+        this.root = root;
+        this.maxParams = maxParams;
+    }
+
+    public static <H> Builder<H> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * @return the best matching route, or null when none matches
+     */
+    public RouteMatch<H> match(String path) {
+        return this.match(path, path.length());
+    }
+
+    /**
+     * Match only path[0, end), e.g. to leave off a query string.
+     */
+    public RouteMatch<H> match(String path, int end) {
+        if (end == 0 || path.charAt(0) != '/') {
+            return null;
+        }
+        Search<H> search = new Search<>(path, end, this.maxParams);
+        if (search.match(this.root, 1, 0)) {
+            return new RouteMatch<>(search.found, path, search.foundParams);
+        }
+        if (search.prefix != null) {
+            return new RouteMatch<>(search.prefix, path, search.prefixParams);
+        }
+        return null;
+    }
+
+    /**
+     * One compiled route.
+     */
+    static final class Route<H> {
+        final String pattern;
+        final H handler;
+        final Object target;
+        final String[] paramNames;
+
+        Route(String pattern, H handler, Object target, String[] paramNames) {
+            this.pattern = pattern;
+            this.handler = handler;
+            this.target = target;
+            this.paramNames = paramNames;
+        }
+    }
+
+    private static final class Node<H> {
+        private final String segment;
+        private final int hash;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Node<H>[] children = new Node[0];
+        private Node<H> param;
+        private String paramName;
+        private Route<H> route;
+        private Route<H> prefix;
+
+        Node(String segment) {
+            this.segment = segment;
+            this.hash = segment.hashCode();
+        }
+
+        Node<H> child(String path, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + path.charAt(i);
+            }
+            int length = end - start;
+            for (Node<H> child : this.children) {
+                if (child.hash == hash && child.segment.length() == length
+                        && path.regionMatches(start, child.segment, 0, length)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        Node<H> addChild(String segment) {
+            for (Node<H> child : this.children) {
+                if (child.segment.equals(segment)) {
+                    return child;
+                }
+            }
+            Node<H> child = new Node<>(segment);
+            this.children = Arrays.copyOf(this.children, this.children.length + 1);
+            this.children[this.children.length - 1] = child;
+            return child;
+        }
+    }
+
+    /**
+     * State of one lookup; params hold start/end offsets of captured segments.
+     */
+    private static final class Search<H> {
+        private final String path;
+        private final int end;
+        private final int[] params;
+        private Route<H> found;
+        private int[] foundParams;
+        private Route<H> prefix;
+        private int[] prefixParams;
+        private int prefixDepth = -1;
+
+        Search(String path, int end, int maxParams) {
+            this.path = path;
+            this.end = end;
+            this.params = maxParams > 0 ? new int[maxParams * 2] : null;
+        }
+
+        /**
+         * @param pos start of the next segment, or past end when the path is consumed
+         * @param captured number of parameters captured so far
+         */
+        boolean match(Node<H> node, int pos, int captured) {
+            if (node.prefix != null && pos > this.prefixDepth) {
+                this.prefix = node.prefix;
+                this.prefixParams = captured > 0 ? Arrays.copyOf(this.params, captured * 2) : null;
+                this.prefixDepth = pos;
+            }
+            if (pos > this.end) {
+                if (node.route != null) {
+                    this.found = node.route;
+                    this.foundParams = captured > 0 ? Arrays.copyOf(this.params, captured * 2) : null;
+                    return true;
+                }
+                return false;
+            }
+
+            int segmentEnd = this.path.indexOf('/', pos);
+            if (segmentEnd < 0 || segmentEnd > this.end) {
+                segmentEnd = this.end;
+            }
+
+            Node<H> literal = node.child(this.path, pos, segmentEnd);
+            if (literal != null && this.match(literal, segmentEnd + 1, captured)) {
+                return true;
+            }
+            if (node.param != null && segmentEnd > pos) {
+                this.params[captured * 2] = pos;
+                this.params[captured * 2 + 1] = segmentEnd;
+                return this.match(node.param, segmentEnd + 1, captured + 1);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Collects routes and compiles them into an immutable Router.
+     */
+    public static final class Builder<H> {
+        private final Node<H> root = new Node<>("");
+        private int maxParams = 0;
+        private boolean compiled = false;
+
+        public Builder<H> add(String pattern, H handler) {
+            return this.add(pattern, handler, null);
+        }
+
+        /**
+         * @param target object handed back with every match of this route, may be null
+         * @throws IllegalArgumentException if the pattern is malformed or already added
+         */
+        public Builder<H> add(String pattern, H handler, Object target) {
+            if (this.compiled) {
+                throw new IllegalStateException("Router already compiled");
+            }
+            if (!pattern.startsWith("/")) {
+                throw new IllegalArgumentException("Route must start with '/': " + pattern);
+            }
+            String[] segments = pattern.substring(1).split("/", -1);
+            List<String> names = new ArrayList<>();
+            Node<H> node = this.root;
+            boolean isPrefix = false;
+
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (segment.equals("*")) {
+                    if (i != segments.length - 1) {
+                        throw new IllegalArgumentException("'*' must be the last segment: " + pattern);
+                    }
+                    isPrefix = true;
+                } else if (segment.startsWith("{") && segment.endsWith("}") && segment.length() > 2) {
+                    String name = segment.substring(1, segment.length() - 1);
+                    if (node.param == null) {
+                        node.param = new Node<>(segment);
+                        node.paramName = name;
+                    } else if (!node.paramName.equals(name)) {
+                        throw new IllegalArgumentException("Conflicting parameter {" + name + "} in " + pattern
+                                + ", already {" + node.paramName + "}");
+                    }
+                    names.add(name);
+                    node = node.param;
+                } else if (segment.indexOf('{') >= 0 || segment.indexOf('}') >= 0 || segment.indexOf('*') >= 0) {
+                    throw new IllegalArgumentException("Unsupported segment '" + segment + "' in " + pattern);
+                } else {
+                    node = node.addChild(segment);
+                }
+            }
+
+            Route<H> route = new Route<>(pattern, handler, target, names.toArray(new String[0]));
+            if (isPrefix) {
+                if (node.prefix != null) {
+                    throw new IllegalArgumentException("Duplicate route: " + pattern);
+                }
+                node.prefix = route;
+            } else {
+                if (node.route != null) {
+                    throw new IllegalArgumentException("Duplicate route: " + pattern);
+                }
+                node.route = route;
+            }
+            this.maxParams = Math.max(this.maxParams, names.size());
+            return this;
+        }
+
+        public Router<H> compile() {
+            this.compiled = true;
+            return new Router<>(this.root, this.maxParams);
+        }
+    }
+}
@@ -1,30 +1,66 @@
 package org.web.labs.inside.jerry.was.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.web.labs.inside.jerry.was.ServletPool;
 import org.web.labs.inside.jerry.was.SimpleContainer;
+import org.web.labs.inside.jerry.was.log.AccessLog;
+import org.web.labs.inside.jerry.was.metrics.ServerMetrics;
 import org.web.labs.inside.jerry.was.status.ContentType;
+import org.web.labs.inside.jerry.was.status.HeaderName;
 import org.web.labs.inside.jerry.was.status.Status;
+import org.web.labs.inside.jerry.was.toyservlet.IStreamingToy;
+import org.web.labs.inside.jerry.was.toyservlet.IToy;
+import org.web.labs.inside.jerry.was.toyservlet.IUploadToy;
 
 /**
  * SimpleHttpServer - A lightweight HTTP server implementation.
  * 
  * Features:
  * - Configurable port
- * - Thread pool for handling requests
- * - Servlet routing
- * - Static file serving
+ * - Thread pool or virtual-thread-per-connection request handling
+ * - HTTP/1.1 persistent connections (keep-alive)
+ * - Slow-client protection: header and body read deadlines, minimum response write rate
+ * - Servlet routing through a compiled route table
+ * - Static file serving (sendfile / memory-mapped) with in-memory cache and 304 revalidation
+ * - gzip content encoding (precompressed .gz siblings, pooled on-the-fly compression)
+ * - Byte-range requests (206, multipart/byteranges) served from file offsets
+ * - Admission control: bounded work queue, queueing deadline and fast 503 shedding
+ * - Control-plane lane: /health, /servlets and /metrics are classified on accept
+ *   and served by their own small executor, never queued behind servlet traffic
+ * - Prometheus metrics at /metrics
+ * - Asynchronous access log
  * - Graceful shutdown
  */
 public class SimpleHttpServer {
@@ -32,15 +68,73 @@ public class SimpleHttpServer {
 	private static final Logger LOGGER = Logger.getLogger(SimpleHttpServer.class.getName());
 	
 	private SimpleContainer container;
-	private final ExecutorService threadPool;
+	private volatile ExecutorService threadPool;
+	private volatile ExecutorService controlPool;
+	private volatile ConnectionTriage triage;
+	private volatile WriteWatchdog writeWatchdog;
 	private final int port;
+	private final ExecutionMode executionMode;
 	private volatile boolean running = false;
 	private ServerSocket serverSocket;
+	private final Set<HttpConnection> openConnections = ConcurrentHashMap.newKeySet();
+	private final StaticContentCache staticCache = new StaticContentCache(new File("."));
+	private final GzipEncoder gzipEncoder = new GzipEncoder();
+	private final AtomicInteger activeConnections = new AtomicInteger();
+	private final LongAdder shedConnections = new LongAdder();
+	private final LongAdder controlConnections = new LongAdder();
+	private final LongAdder headerTimeouts = new LongAdder();
+	private final LongAdder bodyTimeouts = new LongAdder();
+	private final ServerMetrics metrics = new ServerMetrics("jerry_http");
+	private volatile AccessLog accessLog;
+	private volatile RouteTable routes;
+	private volatile ResponseCache responseCache = new ResponseCache();
 	
 	// Configuration
 	private static final int DEFAULT_PORT = 8080;
-	private static final int THREAD_POOL_SIZE = 10;
+	private static final int DEFAULT_MIN_WORKERS = Runtime.getRuntime().availableProcessors();
+	private static final int DEFAULT_MAX_WORKERS = 200;
 	private static final int SHUTDOWN_TIMEOUT_SECONDS = 5;
+	// Control-plane lane: small, with its own queue, so busy workers never delay it
+	private static final int CONTROL_POOL_SIZE = 2;
+	private static final int CONTROL_QUEUE_CAPACITY = 32;
+	private static final int DEFAULT_KEEP_ALIVE_TIMEOUT_MILLIS = 15000;
+	private static final int DEFAULT_MAX_KEEP_ALIVE_REQUESTS = 100;
+	private static final int DEFAULT_HEADER_TIMEOUT_MILLIS = 10000;
+	private static final int DEFAULT_BODY_TIMEOUT_MILLIS = 30000;
+	private static final int DEFAULT_MIN_WRITE_RATE = 4096;
+	// Allowed on top of the minimum write rate, so small responses to a busy client are not cut off
+	private static final int WRITE_GRACE_MILLIS = 10000;
+	private static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+	private static final String GZIP_SUFFIX = ".gz";
+	private static final String SERVLET_PREFIX = "/servlet/";
+	private static final int DEFAULT_ACCEPT_BACKLOG = 128;
+	private static final int DEFAULT_QUEUE_CAPACITY = 100;
+	private static final int DEFAULT_MAX_QUEUE_WAIT_MILLIS = 1000;
+	private static final int DEFAULT_MAX_CONNECTIONS = 10000;
+	private static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+	// Input already received from a shed connection that is dropped before closing it
+	private static final int MAX_SHED_DISCARD_BYTES = 64 * 1024;
+	// Unread request body skipped to keep a connection alive; beyond this it is closed
+	private static final long MAX_UNREAD_BODY_BYTES = 64 * 1024;
+	private static final byte[] MESSAGE_HEADERS = ("Content-Type: " + ContentType.TEXT_HTML + "\r\n"
+			+ "Vary: Accept-Encoding\r\n").getBytes(StandardCharsets.US_ASCII);
+	
+	private int keepAliveTimeoutMillis = DEFAULT_KEEP_ALIVE_TIMEOUT_MILLIS;
+	private int maxKeepAliveRequests = DEFAULT_MAX_KEEP_ALIVE_REQUESTS;
+	private int headerTimeoutMillis = DEFAULT_HEADER_TIMEOUT_MILLIS;
+	private int bodyTimeoutMillis = DEFAULT_BODY_TIMEOUT_MILLIS;
+	private int minWriteRate = DEFAULT_MIN_WRITE_RATE;
+	private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+	private int acceptBacklog = DEFAULT_ACCEPT_BACKLOG;
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	private int minWorkers = DEFAULT_MIN_WORKERS;
+	private int maxWorkers = DEFAULT_MAX_WORKERS;
+	private int maxQueueWaitMillis = DEFAULT_MAX_QUEUE_WAIT_MILLIS;
+	private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+	private long maxRequestBodySize = HttpRequest.DEFAULT_MAX_BODY_SIZE;
+	private Path uploadDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+	private volatile int retryAfterSeconds = DEFAULT_RETRY_AFTER_SECONDS;
+	private volatile byte[] overloadedResponse = buildOverloadedResponse(DEFAULT_RETRY_AFTER_SECONDS);
 	
 	/**
 	 * Create server with default port.
@@ -53,8 +147,39 @@ public class SimpleHttpServer {
 	 * Create server with custom port.
 	 */
 	public SimpleHttpServer(int port) {
+		this(port, ExecutionMode.PLATFORM);
+	}
+	
+	/**
+	 * Create server with custom port and connection execution mode.
+	 */
+	public SimpleHttpServer(int port, ExecutionMode executionMode) {
 		this.port = port;
-		this.threadPool = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+		this.executionMode = executionMode;
+		
+		metrics.gauge("connections_active", "Connections being served or waiting for a worker.", activeConnections::get)
+			.gauge("executor_queue_depth", "Accepted connections waiting for a worker.", this::getQueueDepth)
+			.gauge("executor_pool_size", "Platform worker threads in the pool.", this::getWorkerPoolSize)
+			.collector(this::writeAdaptivePoolMetrics)
+			.counter("shed_connections", "Connections rejected with 503 by admission control.", shedConnections::sum)
+			.counter("control_plane_connections", "Connections classified as control-plane on accept.", controlConnections::sum)
+			.counter("header_read_timeouts", "Connections closed because a request header arrived too slowly.", headerTimeouts::sum)
+			.counter("body_read_timeouts", "Connections closed because a request body stalled.", bodyTimeouts::sum)
+			.counter("write_timeouts", "Connections closed because the client read a response too slowly.",
+					() -> writeWatchdog != null ? writeWatchdog.getTimeoutCount() : 0)
+			.gauge("triage_connections", "New connections waiting for their request line while workers are busy.",
+					() -> triage != null ? triage.getParkedCount() : 0)
+			.gauge("gzip_compression_ratio", "Compressed to original size of gzip-encoded responses.", gzipEncoder::getCompressionRatio)
+			.gauge("static_cache_bytes", "Static file bytes held in memory.", staticCache::getTotalBytes)
+			.counter("response_cache_hits", "Servlet responses served from the response cache.", () -> responseCache.getHitCount())
+			.counter("response_cache_misses", "Cacheable servlet requests not found in the response cache.", () -> responseCache.getMissCount())
+			.counter("response_cache_evictions", "Responses evicted from the response cache to make room.", () -> responseCache.getEvictionCount())
+			.counter("response_cache_rejections", "Responses not admitted to the response cache.", () -> responseCache.getRejectionCount())
+			.gauge("response_cache_bytes", "Bytes held by the response cache.", () -> responseCache.getTotalBytes())
+			.counter("servlet_coalesced_requests", "Servlet requests answered by an identical execution in progress.",
+					() -> container != null ? container.getCoalescedCount() : 0)
+			.collector(this::writeServletPoolMetrics)
+			.collector(this::writeStartupMetrics);
 	}
 
 	public void setContainer(SimpleContainer container) {
@@ -66,10 +191,21 @@ public class SimpleHttpServer {
 	 */
 	public void start() {
 		running = true;
+		threadPool = executionMode.newExecutor(minWorkers, maxWorkers, queueCapacity);
+		if (threadPool instanceof AdaptiveThreadPool) {
+			// A worker holds a connection for its whole keep-alive life, so count requests
+			((AdaptiveThreadPool) threadPool).setWorkCounter(metrics::getRequestCount);
+		}
+		controlPool = ExecutionMode.PLATFORM.newExecutor(CONTROL_POOL_SIZE, CONTROL_QUEUE_CAPACITY);
+		writeWatchdog = new WriteWatchdog(openConnections);
+		routes();
 		
 		try {
-			serverSocket = new ServerSocket(port);
-			LOGGER.info("Server started on port " + port);
+			triage = new ConnectionTriage(this::dispatch, keepAliveTimeoutMillis);
+			// Channel-backed so accepted sockets expose a SocketChannel for zero-copy file bodies
+			serverSocket = ServerSocketChannel.open().socket();
+			serverSocket.bind(new InetSocketAddress(port), acceptBacklog);
+			LOGGER.info("Server started on port " + port + " (" + executionMode + " threads)");
 			LOGGER.info("Access at: http://localhost:" + port);
 			
 			while (running) {
@@ -102,14 +238,36 @@ public class SimpleHttpServer {
 			}
 		}
 		
-		// Shutdown thread pool
+		if (threadPool == null) {
+			LOGGER.info("Server stopped");
+			return;
+		}
+		
+		// Shutdown thread pools
+		if (triage != null) {
+			triage.close();
+		}
+		writeWatchdog.close();
 		threadPool.shutdown();
+		controlPool.shutdown();
+		
+		// Close idle keep-alive connections so their workers stop waiting
+		for (HttpConnection connection : openConnections) {
+			if (connection.isIdle()) {
+				closeConnection(connection);
+			}
+		}
+		
 		try {
 			if (!threadPool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
 				threadPool.shutdownNow();
 			}
+			if (!controlPool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				controlPool.shutdownNow();
+			}
 		} catch (InterruptedException e) {
 			threadPool.shutdownNow();
+			controlPool.shutdownNow();
 			Thread.currentThread().interrupt();
 		}
 		
@@ -119,75 +277,637 @@ public class SimpleHttpServer {
 	private void handleConnection(ServerSocket server) throws IOException {
 		Socket socket = server.accept();
 		
-		threadPool.execute(() -> {
-			try (InputStream in = socket.getInputStream(); 
-			     OutputStream out = socket.getOutputStream()) {
-
-				HttpRequest request = new HttpRequest(in);
+		long acceptedAt = System.nanoTime();
+		activeConnections.incrementAndGet();
+		
+		// Whatever of the request line has already arrived decides the lane
+		RequestPrefix prefix = new RequestPrefix();
+		try {
+			prefix.peek(socket);
+		} catch (IOException e) {
+			prefix.markEndOfStream();
+		}
+		ConnectionTriage waiting = triage;
+		if (!prefix.isComplete() && waiting != null && isDataLaneSaturated()
+				&& activeConnections.get() <= maxConnections) {
+			// A worker would not pick this up for a while; find out what it is first
+			waiting.park(socket, prefix, acceptedAt);
+			return;
+		}
+		dispatch(socket, prefix, acceptedAt);
+	}
+	
+	/**
+	 * Hand a new connection to the control-plane lane or the worker pool.
+	 *
+	 * @param queuedAt when the connection was accepted, or released by triage
+	 */
+	private void dispatch(Socket socket, RequestPrefix prefix, long queuedAt) {
+		if (prefix.isEndOfStream() && prefix.isEmpty()) {
+			closeSocket(socket);
+			activeConnections.decrementAndGet();
+			return;
+		}
+		String path = prefix.getPath();
+		RouteMatch<RequestHandler> route = path != null ? routes().match(path) : null;
+		if (route != null && route.getHandler().isControlPlane()) {
+			controlConnections.increment();
+			try {
+				controlPool.execute(() -> serveConnection(socket, prefix, true));
+			} catch (RejectedExecutionException e) {
+				shed(socket, running ? "control queue full" : "shutting down");
+			}
+			return;
+		}
+		
+		if (activeConnections.get() > maxConnections) {
+			shed(socket, "connection limit");
+			return;
+		}
+		
+		try {
+			threadPool.execute(() -> {
+				// A connection that waited too long for a worker has likely been given up on
+				if (System.nanoTime() - queuedAt > TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis)) {
+					shed(socket, "queueing deadline");
+				} else {
+					serveConnection(socket, prefix, false);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			shed(socket, running ? "queue full" : "shutting down");
+		}
+	}
+	
+	/**
+	 * Reject a connection without parsing its request: write the pre-serialized
+	 * 503, drop what the client has sent and close.
+	 */
+	private void shed(Socket socket, String reason) {
+		shedConnections.increment();
+		activeConnections.decrementAndGet();
+		LOGGER.fine("Shedding connection: " + reason);
+		try {
+			byte[] response = overloadedResponse;
+			socket.getOutputStream().write(response);
+			socket.shutdownOutput();
+			metrics.addBytesOut(response.length);
+			discardInput(socket);
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Error writing 503", e);
+		} finally {
+			closeSocket(socket);
+		}
+	}
+	
+	/**
+	 * Read and drop the input that has already arrived, without blocking: closing
+	 * a socket with unread input makes the stack send RST, which can destroy the
+	 * 503 before the client has read it.
+	 */
+	private static void discardInput(Socket socket) throws IOException {
+		SocketChannel channel = socket.getChannel();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		ByteBuffer scratch = ByteBuffer.allocate(4096);
+		int discarded = 0;
+		while (discarded < MAX_SHED_DISCARD_BYTES) {
+			scratch.clear();
+			int n = channel.read(scratch);
+			if (n <= 0) {
+				break;
+			}
+			discarded += n;
+		}
+	}
+	
+	private static byte[] buildOverloadedResponse(int retryAfterSeconds) {
+		HttpResponse response = new HttpResponse(Status.SERVICE_UNAVAILABLE);
+		response.addHeader(HeaderName.CONTENT_TYPE, ContentType.TEXT_PLAIN);
+		response.addHeader(HeaderName.RETRY_AFTER, retryAfterSeconds);
+		response.addHeader(HeaderName.CONNECTION, "close");
+		response.setBody("503 Service Unavailable: server overloaded");
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			response.writeTo(out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+	
+	/**
+	 * True when a new connection would wait for a platform worker.
+	 */
+	private boolean isDataLaneSaturated() {
+		ExecutorService pool = threadPool;
+		if (!(pool instanceof ThreadPoolExecutor)) {
+			return false;
+		}
+		ThreadPoolExecutor executor = (ThreadPoolExecutor) pool;
+		return !executor.getQueue().isEmpty() || executor.getActiveCount() >= executor.getMaximumPoolSize();
+	}
+	
+	private void serveConnection(Socket socket, RequestPrefix prefix, boolean controlLane) {
+		HttpConnection connection;
+		try {
+			connection = new HttpConnection(socket, prefix.prepend(socket.getInputStream()));
+			connection.setReadTimeouts(keepAliveTimeoutMillis, headerTimeoutMillis, bodyTimeoutMillis);
+			connection.setMinWriteRate(minWriteRate, WRITE_GRACE_MILLIS);
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Connection error", e);
+			closeSocket(socket);
+			activeConnections.decrementAndGet();
+			return;
+		}
+		openConnections.add(connection);
+		serveRequests(connection, controlLane);
+	}
+	
+	/**
+	 * Serve requests off one connection until the client asks to close, the idle
+	 * timeout fires or the per-connection request limit is reached. A request
+	 * waiting on an asynchronous servlet releases the thread; the connection is
+	 * picked up again by resumeConnection.
+	 *
+	 * On the control-plane lane the connection closes after its one request
+	 * (classified on accept), so an idle keep-alive connection cannot hold one
+	 * of the lane's few threads.
+	 */
+	private void serveRequests(HttpConnection connection, boolean controlLane) {
+		Runnable resume = null;
+		try {
+			do {
+				if (!connection.drainRequestBody(MAX_UNREAD_BODY_BYTES)) {
+					break;
+				}
+				connection.awaitRequest();
+				HttpRequest request = connection.readRequest(maxRequestBodySize);
 				HttpHeader header = request.getHeader();
+				connection.beginRequest(request, maxKeepAliveRequests, running && !controlLane);
+				if ("100-continue".equalsIgnoreCase(header.getHeader("Expect")) && "HTTP/1.1".equals(header.getVersion())) {
+					request.getBody().expectContinue(connection.getOutputStream());
+				}
 				
-				String path = header.getPath();
-				LOGGER.fine("Request: " + header.getMethod() + " " + path);
-
-				if (path.startsWith("/servlet/")) {
-					handleServletRequest(path, out);
-				} else if (path.equals("/health")) {
-					handleHealthCheck(out);
-				} else if (path.equals("/servlets")) {
-					handleServletList(out);
+				RouteMatch<RequestHandler> match = routes().match(header.getPath());
+				if (request.getBody().isDeclaredTooLarge()) {
+					// Refuse before reading; the unread body makes the connection unusable
+					connection.disableKeepAlive();
+					respondPayloadTooLarge(connection);
+					recordRequest(match != null ? match.getPattern() : "unmatched", header, connection);
+					break;
+				}
+				if (match != null) {
+					try {
+						match.getHandler().handle(header, connection, match);
+					} catch (PayloadTooLargeException e) {
+						connection.disableKeepAlive();
+						if (connection.getResponseStatus() == null) {
+							respondPayloadTooLarge(connection);
+						}
+					}
+					resume = connection.takeSuspended();
+					if (resume != null) {
+						return;
+					}
+					recordRequest(match.getPattern(), header, connection);
 				} else {
-					handleStaticRequest(header, out);
+					respondNotFound(connection);
+					recordRequest("unmatched", header, connection);
 				}
-				
-			} catch (EmptyRequestException e) {
-				// Ignore empty requests (e.g., browser prefetch)
+			} while (connection.isKeepAlive());
+			
+		} catch (EmptyRequestException e) {
+			// Client closed the connection (or sent an empty prefetch request)
+		} catch (BadRequestException e) {
+			respondBadRequest(connection, e);
+		} catch (RequestTimeoutException e) {
+			countRequestTimeout(e);
+		} catch (SocketTimeoutException e) {
+			LOGGER.fine("Closing idle connection");
+		} catch (UncheckedIOException e) {
+			if (e.getCause() instanceof RequestTimeoutException) {
+				countRequestTimeout((RequestTimeoutException) e.getCause());
+			} else if (!(e.getCause() instanceof SocketTimeoutException)) {
+				LOGGER.log(Level.FINE, "Connection error", e);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Connection error", e);
+		} finally {
+			if (resume != null) {
+				// The continuation may run at once; this thread is done with the connection
+				resume.run();
+			} else {
+				finishConnection(connection);
+			}
+		}
+	}
+	
+	private void countRequestTimeout(RequestTimeoutException e) {
+		if (e.getPhase() == RequestTimeoutException.Phase.HEADER) {
+			headerTimeouts.increment();
+		} else {
+			bodyTimeouts.increment();
+		}
+		LOGGER.fine("Closing slow connection: " + e.getMessage());
+	}
+	
+	/**
+	 * Write the response of a suspended request on a worker thread, then go on
+	 * serving the connection.
+	 */
+	private void resumeConnection(HttpConnection connection, Runnable respond) {
+		try {
+			threadPool.execute(() -> {
+				try {
+					respond.run();
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.FINE, "Connection error", e);
+					finishConnection(connection);
+					return;
+				}
+				if (connection.isKeepAlive()) {
+					serveRequests(connection, false);
+				} else {
+					finishConnection(connection);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			finishConnection(connection);
+		}
+	}
+	
+	private void finishConnection(HttpConnection connection) {
+		openConnections.remove(connection);
+		closeConnection(connection);
+		activeConnections.decrementAndGet();
+	}
+	
+	/**
+	 * Route table for the current set of servlets, recompiled when the container's
+	 * servlets change so loaded servlets resolve in the same lookup as their route.
+	 */
+	private Router<RequestHandler> routes() {
+		int generation = container != null ? container.getServletGeneration() : 0;
+		RouteTable table = routes;
+		if (table == null || table.generation != generation) {
+			int deploymentId = container != null ? container.getDeploymentId() : 0;
+			if (table != null && table.deploymentId != 0 && table.deploymentId != deploymentId) {
+				// Responses of the previous deployment may be stale
+				responseCache.clear();
+			}
+			table = new RouteTable(compileRoutes(), generation, deploymentId);
+			routes = table;
+		}
+		return table.router;
+	}
+	
+	private Router<RequestHandler> compileRoutes() {
+		Router.Builder<RequestHandler> builder = Router.builder();
+		builder.add("/health", controlPlane((header, connection, match) -> handleHealthCheck(connection)))
+			.add("/servlets", controlPlane((header, connection, match) -> handleServletList(connection)))
+			.add("/metrics", controlPlane((header, connection, match) -> handleMetrics(connection)))
+			.add(SERVLET_PREFIX + "{name}", this::handleServletRequest)
+			.add("/*", (header, connection, match) -> handleStaticRequest(header, connection));
+		
+		if (container != null) {
+			for (String name : container.getRegisteredServlets()) {
+				IToy servlet = container.getServlet(name);
+				if (servlet != null && isLiteralSegment(name)) {
+					builder.add(SERVLET_PREFIX + name, this::handleServletRequest, servlet);
+				}
+			}
+		}
+		return builder.compile();
+	}
+	
+	/**
+	 * Mark a route's connections to be served on the control-plane lane.
+	 */
+	private static RequestHandler controlPlane(RequestHandler handler) {
+		return new RequestHandler() {
+			@Override
+			public void handle(HttpHeader header, HttpConnection connection, RouteMatch<RequestHandler> match) throws IOException {
+				handler.handle(header, connection, match);
+			}
+			
+			@Override
+			public boolean isControlPlane() {
+				return true;
+			}
+		};
+	}
+	
+	private static boolean isLiteralSegment(String name) {
+		return !name.isEmpty() && name.indexOf('/') < 0 && name.indexOf('{') < 0
+				&& name.indexOf('}') < 0 && !name.equals("*");
+	}
+	
+	private void handleServletRequest(HttpHeader header, HttpConnection connection,
+			RouteMatch<RequestHandler> match) throws IOException {
+		IToy target = (IToy) match.getTarget();
+		String servletName = target != null
+				? match.getPattern().substring(SERVLET_PREFIX.length())
+				: match.getParam("name");
+		
+		IToy servlet = target != null ? target : container.getServlet(servletName);
+		if (servlet instanceof IStreamingToy) {
+			respondWithStream(servletName, servlet, header, connection);
+			return;
+		}
+		// A servlet not loaded yet may be an IUploadToy; actionUpload falls back to doService
+		if (header.isPostMethod() && (servlet == null || servlet instanceof IUploadToy)) {
+			String boundary = MultipartForm.boundary(header.getHeader("Content-Type"));
+			if (boundary != null) {
+				respondWithUpload(servletName, servlet, boundary, header, connection);
+				return;
+			}
+		}
+		
+		String cacheKey = null;
+		// Only GET responses are cached; a POST is always run and never stored
+		if (header.isGetMethod() && responseCache.isCacheable(servletName)) {
+			cacheKey = ResponseCache.key(servletName, header.getQueryParams());
+			ResponseCache.Entry cached = responseCache.get(cacheKey);
+			if (cached != null) {
+				respondWithCachedEntry(cached, header, connection);
+				return;
+			}
+		}
+		
+		// Only GETs are coalesced: a request with a body or side effects runs once per client
+		String flightKey = cacheKey;
+		if (flightKey == null && container.isSingleFlight() && header.isGetMethod()) {
+			flightKey = ResponseCache.key(servletName, header.getQueryParams());
+		}
+		CompletableFuture<String> result = container.actionAsync(servletName, target, flightKey).toCompletableFuture();
+		if (result.isDone()) {
+			respondToServlet(servletName, cacheKey, result, header, connection);
+			return;
+		}
+		
+		// Header fields stay valid while suspended: nothing more is read from the connection
+		String route = match.getPattern();
+		String key = cacheKey;
+		connection.suspend(() -> result.whenComplete((output, error) -> resumeConnection(connection, () -> {
+			try {
+				respondToServlet(servletName, key, result, header, connection);
+				recordRequest(route, header, connection);
 			} catch (IOException e) {
 				throw new UncheckedIOException(e);
-			} finally {
-				closeSocket(socket);
 			}
-		});
+		})));
 	}
 	
-	private void handleServletRequest(String path, OutputStream out) throws IOException {
-		String servletName = path.replace("/servlet/", "");
-		
+	/**
+	 * @param cacheKey response cache key when the servlet's responses are cached, otherwise null
+	 */
+	private void respondToServlet(String servletName, String cacheKey, CompletableFuture<String> result,
+			HttpHeader header, HttpConnection connection) throws IOException {
+		String output;
 		try {
-			String result = container.action(servletName);
-			respondWithMessage(result, out);
+			output = result.join();
+		} catch (CompletionException | CancellationException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			if (cause instanceof SimpleContainer.ServletUnavailableException) {
+				LOGGER.fine("Servlet busy: " + servletName);
+				respondWithError(Status.SERVICE_UNAVAILABLE, "Service Unavailable: " + cause.getMessage(), connection);
+			} else if (cause instanceof TimeoutException) {
+				// The servlet runs in this server, so its overrun is ours rather than an upstream's
+				LOGGER.warning(cause.getMessage());
+				HttpResponse response = connection.response(Status.SERVICE_UNAVAILABLE);
+				response.addHeader(HeaderName.CONTENT_TYPE, ContentType.TEXT_PLAIN);
+				response.addHeader(HeaderName.RETRY_AFTER, retryAfterSeconds);
+				response.setBody("Service Unavailable: " + cause.getMessage());
+				send(response, connection);
+			} else if (cause instanceof SimpleContainer.ServletException) {
+				LOGGER.log(Level.WARNING, "Servlet error: " + servletName, cause);
+				respondWithError(Status.INTERNAL_ERROR, "Servlet Error: " + cause.getMessage(), connection);
+			} else {
+				LOGGER.log(Level.SEVERE, "Unexpected error handling servlet: " + servletName, cause);
+				respondWithError(Status.INTERNAL_ERROR, "Internal Server Error", connection);
+			}
+			return;
+		}
+		if (cacheKey != null) {
+			byte[] body = output.getBytes(StandardCharsets.UTF_8);
+			byte[] gzipBody = body.length >= compressionThreshold ? gzipEncoder.compress(body) : null;
+			ResponseCache.Entry entry = responseCache.put(cacheKey, servletName, MESSAGE_HEADERS, body, gzipBody);
+			if (entry != null) {
+				respondWithCachedEntry(entry, header, connection);
+				return;
+			}
+		}
+		respondWithMessage(output, header, connection);
+	}
+	
+	/**
+	 * Parse a multipart body, spooling files to the upload directory, and hand it
+	 * to the servlet. The temporary files are deleted once the servlet returns.
+	 */
+	private void respondWithUpload(String servletName, IToy servlet, String boundary, HttpHeader header,
+			HttpConnection connection) throws IOException {
+		String output;
+		try (MultipartForm form = MultipartForm.parse(connection.getRequestBody(), boundary,
+				uploadDirectory, MultipartForm.DEFAULT_MAX_FIELD_SIZE)) {
+			output = container.actionUpload(servletName, servlet, form.getFields(), form.getFiles());
+		} catch (MultipartForm.MalformedPartException e) {
+			respondWithError(Status.BAD_REQUEST, "Bad Request: " + e.getMessage(), connection);
+			return;
+		} catch (SimpleContainer.ServletUnavailableException e) {
+			LOGGER.fine("Servlet busy: " + servletName);
+			respondWithError(Status.SERVICE_UNAVAILABLE, "Service Unavailable: " + e.getMessage(), connection);
+			return;
 		} catch (SimpleContainer.ServletException e) {
 			LOGGER.log(Level.WARNING, "Servlet error: " + servletName, e);
-			respondWithError(Status.INTERNAL_ERROR, "Servlet Error: " + e.getMessage(), out);
-		} catch (Exception e) {
-			LOGGER.log(Level.SEVERE, "Unexpected error handling servlet: " + servletName, e);
-			respondWithError(Status.INTERNAL_ERROR, "Internal Server Error", out);
+			respondWithError(Status.INTERNAL_ERROR, "Servlet Error: " + e.getMessage(), connection);
+			return;
 		}
+		respondWithMessage(output, header, connection);
 	}
 	
-	private void handleStaticRequest(HttpHeader header, OutputStream out) throws IOException {
+	/**
+	 * Run an IStreamingToy against a response connected to the socket, so the
+	 * client receives chunks while the servlet is still writing.
+	 */
+	private void respondWithStream(String servletName, IToy servlet, HttpHeader header,
+			HttpConnection connection) throws IOException {
+		StreamingResponse response = new StreamingResponse(connection, "HTTP/1.1".equals(header.getVersion()));
+		long written;
+		try {
+			container.actionStreaming(servletName, servlet, response);
+			written = response.finish();
+		} catch (SimpleContainer.ServletException | IOException e) {
+			if (response.isCommitted()) {
+				// Status already sent: end the connection so the client sees a truncated body
+				LOGGER.log(Level.WARNING, "Servlet stream aborted: " + servletName, e);
+				connection.disableKeepAlive();
+				connection.responseSent(response.getStatus(), response.getBytesWritten());
+				metrics.addBytesOut(response.getBytesWritten());
+				return;
+			}
+			if (e instanceof SimpleContainer.ServletUnavailableException) {
+				LOGGER.fine("Servlet busy: " + servletName);
+				respondWithError(Status.SERVICE_UNAVAILABLE, "Service Unavailable: " + e.getMessage(), connection);
+			} else {
+				LOGGER.log(Level.WARNING, "Servlet error: " + servletName, e);
+				respondWithError(Status.INTERNAL_ERROR, "Servlet Error: " + e.getMessage(), connection);
+			}
+			return;
+		}
+		connection.responseSent(response.getStatus(), written);
+		metrics.addBytesOut(written);
+	}
+	
+	private void handleStaticRequest(HttpHeader header, HttpConnection connection) throws IOException {
 		if (header.isGetMethod()) {
-			File file = new File(".", header.getPath());
+			StaticContentCache.Entry entry = staticCache.lookup(header.getPath());
 
-			if (file.exists() && file.isFile()) {
-				respondWithFile(file, out);
+			if (entry == null) {
+				respondNotFound(connection);
+				return;
+			}
+			
+			boolean compressible = entry.getContentType().isCompressible();
+			String range = header.getHeader("Range");
+			if (range != null && !entry.isNotModified(header) && entry.isRangeApplicable(header)) {
+				List<ByteRange> ranges = ByteRange.parse(range, entry.getLength());
+				if (ranges != null) {
+					respondWithRanges(entry, ranges, compressible, connection);
+					return;
+				}
+			}
+			
+			// Prefer a precompressed sibling that is at least as new as the original
+			StaticContentCache.Entry variant = entry;
+			if (compressible && GzipEncoder.acceptsGzip(header)) {
+				StaticContentCache.Entry gzipped = staticCache.lookup(header.getPath() + GZIP_SUFFIX);
+				if (gzipped != null && gzipped.getLastModified() >= entry.getLastModified()) {
+					variant = gzipped;
+				}
+			}
+			
+			if (variant.isNotModified(header)) {
+				respondNotModified(variant, compressible, connection);
 			} else {
-				respondNotFound(out);
+				respondWithFile(entry, variant, compressible, connection);
 			}
 		} else {
-			respondOk(out);
+			respondOk(connection);
 		}
 	}
 	
-	private void handleHealthCheck(OutputStream out) throws IOException {
-		HttpResponse response = new HttpResponse(Status.OK);
-		response.addHeader("Content-Type", ContentType.APPLICATION_JSON);
+	private void handleHealthCheck(HttpConnection connection) throws IOException {
+		HttpResponse response = connection.response(Status.OK);
+		response.addHeader(HeaderName.CONTENT_TYPE, ContentType.APPLICATION_JSON);
 		response.setBody("{\"status\":\"healthy\",\"port\":" + port + "}");
-		response.writeTo(out);
+		send(response, connection);
+	}
+	
+	private void handleMetrics(HttpConnection connection) throws IOException {
+		HttpResponse response = connection.response(Status.OK);
+		response.addHeader(HeaderName.CONTENT_TYPE, ServerMetrics.CONTENT_TYPE);
+		response.setBody(metrics.toPrometheus());
+		send(response, connection);
+	}
+	
+	/**
+	 * Duration of each eager container startup phase.
+	 */
+	private void writeStartupMetrics(StringBuilder out) {
+		SimpleContainer current = container;
+		Map<String, Long> timings = current != null ? current.getStartupTimings() : Collections.emptyMap();
+		if (timings.isEmpty()) {
+			return;
+		}
+		String name = metrics.getPrefix() + "_startup_phase_seconds";
+		ServerMetrics.header(out, name, "Time spent in each phase of eager container startup.", "gauge");
+		for (Map.Entry<String, Long> phase : timings.entrySet()) {
+			out.append(name).append("{phase=\"").append(phase.getKey()).append("\"} ")
+				.append(phase.getValue() / 1e9).append('\n');
+		}
 	}
 	
-	private void handleServletList(OutputStream out) throws IOException {
-		HttpResponse response = new HttpResponse(Status.OK);
-		response.addHeader("Content-Type", ContentType.APPLICATION_JSON);
+	/**
+	 * Queueing delay and resize decisions of an adaptive worker pool.
+	 */
+	private void writeAdaptivePoolMetrics(StringBuilder out) {
+		ExecutorService pool = threadPool;
+		if (!(pool instanceof AdaptiveThreadPool)) {
+			return;
+		}
+		AdaptiveThreadPool adaptive = (AdaptiveThreadPool) pool;
+		String prefix = metrics.getPrefix() + "_executor";
+		
+		ServerMetrics.header(out, prefix + "_active_workers", "Workers running a connection handler.", "gauge");
+		out.append(prefix).append("_active_workers ").append(adaptive.getActiveCount()).append('\n');
+		ServerMetrics.header(out, prefix + "_resizes_total", "Worker pool size changes by direction.", "counter");
+		out.append(prefix).append("_resizes_total{direction=\"grow\"} ").append(adaptive.getGrowCount()).append('\n');
+		out.append(prefix).append("_resizes_total{direction=\"shrink\"} ").append(adaptive.getShrinkCount()).append('\n');
+		ServerMetrics.header(out, prefix + "_reverted_growths_total", "Pool growths undone because throughput did not rise.", "counter");
+		out.append(prefix).append("_reverted_growths_total ").append(adaptive.getRevertCount()).append('\n');
+		ServerMetrics.header(out, prefix + "_queue_wait_seconds", "Time accepted connections waited for a worker.", "histogram");
+		adaptive.getQueueWait().writePrometheus(out, prefix + "_queue_wait_seconds", "");
+	}
+	
+	/**
+	 * Size, idle instances, borrows, timeouts and borrow wait time of each servlet instance pool.
+	 */
+	private void writeServletPoolMetrics(StringBuilder out) {
+		SimpleContainer current = container;
+		Map<String, ServletPool> pools = current != null ? current.getServletPools() : Collections.emptyMap();
+		if (pools.isEmpty()) {
+			return;
+		}
+		String prefix = metrics.getPrefix() + "_servlet_pool";
+		
+		writeServletPoolSeries(out, pools, prefix + "_size", "Instances in the servlet's pool.", "gauge",
+				ServletPool::getSize);
+		writeServletPoolSeries(out, pools, prefix + "_idle", "Pooled instances not serving a request.", "gauge",
+				ServletPool::getIdleCount);
+		writeServletPoolSeries(out, pools, prefix + "_borrows_total", "Instances borrowed from the pool.", "counter",
+				ServletPool::getBorrowCount);
+		writeServletPoolSeries(out, pools, prefix + "_timeouts_total", "Borrows that found no free instance in time.", "counter",
+				ServletPool::getTimeoutCount);
+		ServerMetrics.header(out, prefix + "_wait_seconds", "Time spent waiting for a free instance.", "histogram");
+		for (Map.Entry<String, ServletPool> pool : pools.entrySet()) {
+			pool.getValue().getWaitTime().writePrometheus(out, prefix + "_wait_seconds",
+					"servlet=\"" + ServerMetrics.escape(pool.getKey()) + "\"");
+		}
+	}
+	
+	/**
+	 * One metric with a sample per servlet pool.
+	 */
+	private static void writeServletPoolSeries(StringBuilder out, Map<String, ServletPool> pools, String name,
+			String help, String type, ToLongFunction<ServletPool> value) {
+		ServerMetrics.header(out, name, help, type);
+		for (Map.Entry<String, ServletPool> pool : pools.entrySet()) {
+			out.append(name).append("{servlet=\"").append(ServerMetrics.escape(pool.getKey()))
+				.append("\"} ").append(value.applyAsLong(pool.getValue())).append('\n');
+		}
+	}
+	
+	private void recordRequest(String route, HttpHeader header, HttpConnection connection) {
+		Status status = connection.getResponseStatus();
+		int code = status != null ? status.getCode() : 0;
+		long latency = System.nanoTime() - connection.getRequestStartNanos();
+		metrics.recordRequest(route, code, latency);
+		metrics.addBytesIn(connection.takeBytesRead());
+		
+		AccessLog log = accessLog;
+		if (log != null) {
+			log.log(connection.getSocket().getInetAddress(), header.getMethod(), header.getPath(),
+					code, connection.getResponseBytes(), latency);
+		}
+	}
+	
+	private void handleServletList(HttpConnection connection) throws IOException {
+		HttpResponse response = connection.response(Status.OK);
+		response.addHeader(HeaderName.CONTENT_TYPE, ContentType.APPLICATION_JSON);
 		
 		StringBuilder json = new StringBuilder("{\"servlets\":[");
 		boolean first = true;
@@ -199,7 +919,7 @@ public class SimpleHttpServer {
 		json.append("]}");
 		
 		response.setBody(json.toString());
-		response.writeTo(out);
+		send(response, connection);
 	}
 	
 	private void closeSocket(Socket socket) {
@@ -209,34 +929,314 @@ public class SimpleHttpServer {
 			LOGGER.log(Level.FINE, "Error closing socket", e);
 		}
 	}
+	
+	private void closeConnection(HttpConnection connection) {
+		try {
+			connection.close();
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Error closing connection", e);
+		}
+	}
+	
+	private void send(HttpResponse response, HttpConnection connection) throws IOException {
+		response.addHeader(HeaderName.CONNECTION, connection.isKeepAlive() ? "keep-alive" : "close");
+		long written;
+		// One deadline for the whole response, including zero-copy writes that bypass the stream
+		connection.beginWrite(response.getBodyLength());
+		try {
+			written = response.writeTo(connection.getOutputStream(), connection.getChannel(), connection.getResponseBuffer());
+		} finally {
+			connection.endWrite();
+		}
+		connection.responseSent(response.getStatus(), written);
+		metrics.addBytesOut(written);
+	}
 
-	private void respondNotFound(OutputStream out) throws IOException {
-		respondWithError(Status.NOT_FOUND, "404 Not Found", out);
+	private void respondNotFound(HttpConnection connection) throws IOException {
+		respondWithError(Status.NOT_FOUND, "404 Not Found", connection);
 	}
 	
-	private void respondWithError(Status status, String message, OutputStream out) throws IOException {
-		HttpResponse response = new HttpResponse(status);
-		response.addHeader("Content-Type", ContentType.TEXT_PLAIN);
+	private void respondPayloadTooLarge(HttpConnection connection) throws IOException {
+		respondWithError(Status.PAYLOAD_TOO_LARGE, "413 Payload Too Large", connection);
+	}
+	
+	/**
+	 * Answer a request whose header could not be used and close: where its body
+	 * ends is unknown, so nothing after it can be read as the next request.
+	 */
+	private void respondBadRequest(HttpConnection connection, BadRequestException e) {
+		connection.disableKeepAlive();
+		try {
+			respondWithError(Status.BAD_REQUEST, "400 Bad Request: " + e.getMessage(), connection);
+		} catch (IOException writeError) {
+			LOGGER.log(Level.FINE, "Connection error", writeError);
+		}
+	}
+	
+	private void respondWithError(Status status, String message, HttpConnection connection) throws IOException {
+		HttpResponse response = connection.response(status);
+		response.addHeader(HeaderName.CONTENT_TYPE, ContentType.TEXT_PLAIN);
 		response.setBody(message);
-		response.writeTo(out);
+		send(response, connection);
 	}
 
-	private void respondWithFile(File file, OutputStream out) throws IOException {
-		HttpResponse response = new HttpResponse(Status.OK);
-		response.setBody(file);
-		response.writeTo(out);
+	/**
+	 * @param variant the entry whose bytes are sent: the file itself or its .gz sibling
+	 */
+	private void respondWithFile(StaticContentCache.Entry entry, StaticContentCache.Entry variant,
+			boolean vary, HttpConnection connection) throws IOException {
+		HttpResponse response = connection.response(Status.OK);
+		ByteBuffer body = variant.getBody();
+		if (variant == entry && body != null) {
+			response.setBody(body);
+			response.addEncodedHeaders(entry.getEntityHeaders());
+		} else {
+			if (body != null) {
+				response.setBody(body);
+			} else {
+				response.setBody(variant.getFile());
+			}
+			response.addHeader(HeaderName.CONTENT_TYPE, entry.getContentType());
+			response.addEncodedHeaders(variant.getValidatorHeaders());
+		}
+		if (variant != entry) {
+			response.addHeader(HeaderName.CONTENT_ENCODING, "gzip");
+		} else {
+			response.addHeader(HeaderName.ACCEPT_RANGES, "bytes");
+		}
+		if (vary) {
+			response.addHeader(HeaderName.VARY, "Accept-Encoding");
+		}
+		send(response, connection);
+	}
+	
+	/**
+	 * @param vary whether the full response varies by Accept-Encoding; partial ones
+	 *             must say so too, so caches do not mix ranges of different variants
+	 */
+	private void respondWithRanges(StaticContentCache.Entry entry, List<ByteRange> ranges,
+			boolean vary, HttpConnection connection) throws IOException {
+		if (ranges.isEmpty()) {
+			HttpResponse response = connection.response(Status.RANGE_NOT_SATISFIABLE);
+			response.addHeader(HeaderName.CONTENT_RANGE, "bytes */" + entry.getLength());
+			if (vary) {
+				response.addHeader(HeaderName.VARY, "Accept-Encoding");
+			}
+			send(response, connection);
+			return;
+		}
+		
+		ByteRangeBody body = new ByteRangeBody(entry, ranges);
+		HttpResponse response = connection.response(Status.PARTIAL_CONTENT);
+		if (body.isMultipart()) {
+			response.addHeader(HeaderName.CONTENT_TYPE, body.getContentType());
+		} else {
+			response.addHeader(HeaderName.CONTENT_TYPE, entry.getContentType());
+			response.addHeader(HeaderName.CONTENT_RANGE, body.getContentRange());
+		}
+		response.addHeader(HeaderName.ACCEPT_RANGES, "bytes");
+		if (vary) {
+			response.addHeader(HeaderName.VARY, "Accept-Encoding");
+		}
+		response.addEncodedHeaders(entry.getValidatorHeaders());
+		response.setBody(body);
+		send(response, connection);
+	}
+	
+	private void respondNotModified(StaticContentCache.Entry entry, boolean vary, HttpConnection connection) throws IOException {
+		HttpResponse response = connection.response(Status.NOT_MODIFIED);
+		response.addEncodedHeaders(entry.getValidatorHeaders());
+		if (vary) {
+			response.addHeader(HeaderName.VARY, "Accept-Encoding");
+		}
+		send(response, connection);
 	}
 
-	private void respondOk(OutputStream out) throws IOException {
-		HttpResponse response = new HttpResponse(Status.OK);
-		response.writeTo(out);
+	private void respondWithCachedEntry(ResponseCache.Entry entry, HttpHeader header, HttpConnection connection) throws IOException {
+		HttpResponse response = connection.response(Status.OK);
+		response.addEncodedHeaders(entry.getHeaders());
+		ByteBuffer gzipBody = entry.getGzipBody();
+		if (gzipBody != null && GzipEncoder.acceptsGzip(header)) {
+			response.addHeader(HeaderName.CONTENT_ENCODING, "gzip");
+			response.setBody(gzipBody);
+		} else {
+			response.setBody(entry.getBody());
+		}
+		send(response, connection);
 	}
 	
-	private void respondWithMessage(String message, OutputStream out) throws IOException {
-		HttpResponse response = new HttpResponse(Status.OK);
-		response.addHeader("Content-Type", ContentType.TEXT_HTML);
-		response.setBody(message);
-		response.writeTo(out);
+	private void respondOk(HttpConnection connection) throws IOException {
+		HttpResponse response = connection.response(Status.OK);
+		send(response, connection);
+	}
+	
+	private void respondWithMessage(String message, HttpHeader header, HttpConnection connection) throws IOException {
+		HttpResponse response = connection.response(Status.OK);
+		response.addHeader(HeaderName.CONTENT_TYPE, ContentType.TEXT_HTML);
+		response.addHeader(HeaderName.VARY, "Accept-Encoding");
+		
+		if (ResponseBuffer.utf8Length(message) >= compressionThreshold && GzipEncoder.acceptsGzip(header)) {
+			byte[] compressed = gzipEncoder.compress(message.getBytes(StandardCharsets.UTF_8));
+			response.addHeader(HeaderName.CONTENT_ENCODING, "gzip");
+			response.setBody(ByteBuffer.wrap(compressed));
+		} else {
+			response.setBody(message);
+		}
+		send(response, connection);
+	}
+	
+	/**
+	 * Set how long an idle keep-alive connection is held open.
+	 */
+	public void setKeepAliveTimeout(int timeoutMillis) {
+		this.keepAliveTimeoutMillis = timeoutMillis;
+	}
+	
+	/**
+	 * Set how long a request header may take to arrive once its first byte has (0 = no limit).
+	 */
+	public void setHeaderTimeout(int timeoutMillis) {
+		this.headerTimeoutMillis = timeoutMillis;
+	}
+	
+	/**
+	 * Set how long a request body may stall between reads (0 = the keep-alive timeout).
+	 */
+	public void setBodyTimeout(int timeoutMillis) {
+		this.bodyTimeoutMillis = timeoutMillis;
+	}
+	
+	/**
+	 * Set the slowest rate (bytes per second) at which a client must accept a
+	 * response before the connection is closed (0 = no limit).
+	 */
+	public void setMinWriteRate(int bytesPerSecond) {
+		this.minWriteRate = bytesPerSecond;
+	}
+	
+	/**
+	 * Set the minimum servlet response size (bytes) that is gzip-compressed on the fly.
+	 */
+	public void setCompressionThreshold(int bytes) {
+		this.compressionThreshold = bytes;
+	}
+	
+	/**
+	 * Set how many requests one connection may serve before it is closed (0 = unlimited).
+	 */
+	public void setMaxKeepAliveRequests(int maxRequests) {
+		this.maxKeepAliveRequests = maxRequests;
+	}
+	
+	/**
+	 * Set the listen backlog of pending, not yet accepted connections. Takes effect on start().
+	 */
+	public void setAcceptBacklog(int backlog) {
+		this.acceptBacklog = backlog;
+	}
+	
+	/**
+	 * Set how many accepted connections may wait for a platform worker. Takes effect on start().
+	 */
+	public void setQueueCapacity(int capacity) {
+		this.queueCapacity = capacity;
+	}
+	
+	/**
+	 * Set the bounds of the platform worker pool. Equal bounds give a fixed pool;
+	 * otherwise it is resized by measured queueing delay. Takes effect on start().
+	 */
+	public void setWorkerPoolSize(int min, int max) {
+		if (min <= 0 || max < min) {
+			throw new IllegalArgumentException("Invalid worker pool bounds: " + min + ".." + max);
+		}
+		this.minWorkers = min;
+		this.maxWorkers = max;
+	}
+	
+	/**
+	 * Set how long an accepted connection may wait for a worker before it is shed.
+	 */
+	public void setMaxQueueWait(int waitMillis) {
+		this.maxQueueWaitMillis = waitMillis;
+	}
+	
+	/**
+	 * Set the limit on connections being served or queued at once.
+	 */
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+	
+	/**
+	 * Write one line per request to the given access log; null disables logging.
+	 */
+	public void setAccessLog(AccessLog accessLog) {
+		this.accessLog = accessLog;
+		if (accessLog != null) {
+			metrics.counter("access_log_dropped", "Access log records dropped because the buffer was full.",
+					accessLog::getDroppedCount);
+		}
+	}
+	
+	/**
+	 * Replace the servlet response cache with an empty one of the given byte budget;
+	 * call before setting TTLs.
+	 */
+	public void setResponseCacheSize(long bytes) {
+		this.responseCache = new ResponseCache(bytes);
+	}
+	
+	/**
+	 * Refuse request bodies larger than this many bytes with 413.
+	 */
+	public void setMaxRequestBodySize(long bytes) {
+		this.maxRequestBodySize = bytes;
+	}
+	
+	/**
+	 * Directory for the temporary files of multipart uploads (default: java.io.tmpdir).
+	 */
+	public void setUploadDirectory(Path directory) {
+		this.uploadDirectory = directory;
+	}
+	
+	/**
+	 * Set the Retry-After value sent with shed 503 responses and servlet timeouts.
+	 */
+	public void setRetryAfter(int seconds) {
+		this.retryAfterSeconds = seconds;
+		this.overloadedResponse = buildOverloadedResponse(seconds);
+	}
+	
+	/**
+	 * Handles one routed request.
+	 */
+	@FunctionalInterface
+	private interface RequestHandler {
+		void handle(HttpHeader header, HttpConnection connection, RouteMatch<RequestHandler> match) throws IOException;
+		
+		/**
+		 * Whether connections whose first request matches this route bypass the worker pool.
+		 */
+		default boolean isControlPlane() {
+			return false;
+		}
+	}
+	
+	/**
+	 * Compiled router tagged with the servlet generation it was built from.
+	 */
+	private static final class RouteTable {
+		private final Router<RequestHandler> router;
+		private final int generation;
+		private final int deploymentId;
+		
+		RouteTable(Router<RequestHandler> router, int generation, int deploymentId) {
+			this.router = router;
+			this.generation = generation;
+			this.deploymentId = deploymentId;
+		}
 	}
 	
 	// Getters
@@ -244,7 +1244,86 @@ public class SimpleHttpServer {
 		return port;
 	}
 	
+	public GzipEncoder getGzipEncoder() {
+		return gzipEncoder;
+	}
+	
+	public StaticContentCache getStaticCache() {
+		return staticCache;
+	}
+	
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+	
+	public AccessLog getAccessLog() {
+		return accessLog;
+	}
+	
+	public ServerMetrics getMetrics() {
+		return metrics;
+	}
+	
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+	
 	public boolean isRunning() {
 		return running;
 	}
+	
+	public int getKeepAliveTimeout() {
+		return keepAliveTimeoutMillis;
+	}
+	
+	public int getMaxKeepAliveRequests() {
+		return maxKeepAliveRequests;
+	}
+	
+	public int getHeaderTimeout() {
+		return headerTimeoutMillis;
+	}
+	
+	public int getBodyTimeout() {
+		return bodyTimeoutMillis;
+	}
+	
+	public int getMinWriteRate() {
+		return minWriteRate;
+	}
+	
+	/**
+	 * Connections rejected with 503 by admission control.
+	 */
+	public long getShedCount() {
+		return shedConnections.sum();
+	}
+	
+	public int getActiveConnections() {
+		return activeConnections.get();
+	}
+	
+	public int getMinWorkers() {
+		return minWorkers;
+	}
+	
+	public int getMaxWorkers() {
+		return maxWorkers;
+	}
+	
+	/**
+	 * Platform worker threads currently in the pool.
+	 */
+	public int getWorkerPoolSize() {
+		ExecutorService pool = threadPool;
+		return pool instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) pool).getPoolSize() : 0;
+	}
+	
+	/**
+	 * Connections accepted but still waiting for a platform worker.
+	 */
+	public int getQueueDepth() {
+		ExecutorService pool = threadPool;
+		return pool instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) pool).getQueue().size() : 0;
+	}
 }
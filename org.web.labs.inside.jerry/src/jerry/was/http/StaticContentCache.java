@@ -0,0 +1,333 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.web.labs.inside.jerry.was.status.ContentType;
+
+import static org.web.labs.inside.jerry.was.status.Constant.*;
+
+/**
+ * StaticContentCache - Bounded in-memory cache of static files keyed by request path.
+ *
+ * Each entry keeps the pre-encoded entity headers (Content-Type, ETag, Last-Modified)
+ * and, for files up to the per-entry limit, the body itself. Entries are evicted in
+ * LRU order once the total cached body size exceeds the byte budget, and are
+ * revalidated against the file's modification time at most once per interval so
+ * hits normally cost no disk I/O at all.
+ */
+public class StaticContentCache {
+
+    private static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    private static final int DEFAULT_MAX_ENTRY_BYTES = 1024 * 1024;
+    private static final int DIRECT_BUFFER_THRESHOLD = 64 * 1024;
+    private static final long DEFAULT_REVALIDATE_MILLIS = 1000;
+    private static final int MAX_MISSING_ENTRIES = 1024;
+
+    private final File root;
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final long revalidateMillis;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes = 0;
+
+    // Paths known not to exist, with the time they were checked (e.g. absent .gz siblings)
+    private final Map<String, Long> missing = new ConcurrentHashMap<>();
+
+    public StaticContentCache(File root) {
+        this(root, DEFAULT_MAX_BYTES, DEFAULT_MAX_ENTRY_BYTES, DEFAULT_REVALIDATE_MILLIS);
+    }
+
+    public StaticContentCache(File root, long maxBytes, int maxEntryBytes, long revalidateMillis) {
+        this.root = root;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.revalidateMillis = revalidateMillis;
+    }
+
+    /**
+     * Look up the file for a request path, loading or refreshing it as needed.
+     *
+     * @return the entry, or null when no regular file exists at the path
+     */
+    public Entry lookup(String path) throws IOException {
+        long now = System.currentTimeMillis();
+
+        Entry entry;
+        synchronized (this) {
+            entry = this.entries.get(path);
+        }
+
+        if (entry != null) {
+            if (now - entry.checkedAt < this.revalidateMillis) {
+                return entry;
+            }
+            if (entry.file.lastModified() == entry.lastModified && entry.file.length() == entry.length) {
+                entry.checkedAt = now;
+                return entry;
+            }
+            this.remove(path, entry);
+        }
+
+        Long missingSince = this.missing.get(path);
+        if (missingSince != null && now - missingSince < this.revalidateMillis) {
+            return null;
+        }
+
+        File file = new File(this.root, path);
+        if (!file.isFile()) {
+            if (this.missing.size() >= MAX_MISSING_ENTRIES) {
+                this.missing.clear();
+            }
+            this.missing.put(path, now);
+            return null;
+        }
+        this.missing.remove(path);
+
+        entry = this.load(file, now);
+        this.put(path, entry);
+        return entry;
+    }
+
+    /**
+     * Drop every cached entry.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.missing.clear();
+        this.totalBytes = 0;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return this.totalBytes;
+    }
+
+    private Entry load(File file, long now) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long lastModified = file.lastModified();
+            long length = channel.size();
+
+            ByteBuffer body = null;
+            String etag;
+            if (length <= this.maxEntryBytes) {
+                body = length >= DIRECT_BUFFER_THRESHOLD
+                        ? ByteBuffer.allocateDirect((int) length)
+                        : ByteBuffer.allocate((int) length);
+                while (body.hasRemaining() && channel.read(body) >= 0) {
+                    // read until full
+                }
+                body.flip();
+                etag = etag(length, lastModified, crc32(body.duplicate()));
+            } else {
+                // Too large to hold; identify by size and mtime and stream from disk
+                etag = etag(length, lastModified, -1);
+            }
+
+            return new Entry(file, length, lastModified, etag, ContentType.fromFileName(file.getName()), body, now);
+        }
+    }
+
+    private synchronized void put(String path, Entry entry) {
+        Entry previous = this.entries.put(path, entry);
+        if (previous != null) {
+            this.totalBytes -= previous.getCachedBytes();
+        }
+        this.totalBytes += entry.getCachedBytes();
+
+        Iterator<Map.Entry<String, Entry>> eldest = this.entries.entrySet().iterator();
+        while (this.totalBytes > this.maxBytes && eldest.hasNext()) {
+            Entry victim = eldest.next().getValue();
+            if (victim == entry) {
+                continue;
+            }
+            this.totalBytes -= victim.getCachedBytes();
+            eldest.remove();
+        }
+    }
+
+    private synchronized void remove(String path, Entry entry) {
+        if (this.entries.remove(path, entry)) {
+            this.totalBytes -= entry.getCachedBytes();
+        }
+    }
+
+    private static long crc32(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        if (buffer.hasArray()) {
+            crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            byte[] chunk = new byte[8192];
+            while (buffer.hasRemaining()) {
+                int n = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, n);
+                crc.update(chunk, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static String etag(long length, long lastModified, long checksum) {
+        StringBuilder sb = new StringBuilder("\"")
+                .append(Long.toHexString(length)).append('-')
+                .append(Long.toHexString(lastModified));
+        if (checksum >= 0) {
+            sb.append('-').append(Long.toHexString(checksum));
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * One cached static file.
+     */
+    public static class Entry {
+        private final File file;
+        private final long length;
+        private final long lastModified;
+        private final String etag;
+        private final ContentType contentType;
+        private final ByteBuffer body;
+        private final byte[] entityHeaders;
+        private final byte[] validatorHeaders;
+        private volatile long checkedAt;
+
+        Entry(File file, long length, long lastModified, String etag,
+                ContentType contentType, ByteBuffer body, long checkedAt) {
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.contentType = contentType;
+            this.body = body;
+            this.checkedAt = checkedAt;
+
+            String validators = "ETag: " + etag + CRLF
+                    + "Last-Modified: " + formatHttpDate(lastModified) + CRLF;
+            this.validatorHeaders = validators.getBytes(StandardCharsets.US_ASCII);
+            this.entityHeaders = ("Content-Type: " + contentType + CRLF + validators)
+                    .getBytes(StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * True when the request's conditional headers show the client copy is current.
+         * If-None-Match takes precedence over If-Modified-Since.
+         */
+        public boolean isNotModified(HttpHeader header) {
+            String ifNoneMatch = header.getHeader("If-None-Match");
+            if (ifNoneMatch != null) {
+                return matchesEtag(ifNoneMatch);
+            }
+
+            String ifModifiedSince = header.getHeader("If-Modified-Since");
+            if (ifModifiedSince != null) {
+                long since = parseHttpDate(ifModifiedSince);
+                return since >= 0 && this.lastModified / 1000 <= since / 1000;
+            }
+            return false;
+        }
+
+        /**
+         * False when an If-Range validator no longer matches, in which case the
+         * Range header is ignored and the whole entity is sent.
+         */
+        public boolean isRangeApplicable(HttpHeader header) {
+            String ifRange = header.getHeader("If-Range");
+            if (ifRange == null) {
+                return true;
+            }
+            String validator = ifRange.trim();
+            if (validator.startsWith("\"") || validator.startsWith("W/")) {
+                // Only a strong comparison can select a range
+                return validator.equals(this.etag);
+            }
+            long date = parseHttpDate(validator);
+            return date >= 0 && date / 1000 == this.lastModified / 1000;
+        }
+
+        private boolean matchesEtag(String ifNoneMatch) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(this.etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Cached body positioned at its start, or null when the file must be read from disk.
+         */
+        public ByteBuffer getBody() {
+            return this.body != null ? this.body.duplicate() : null;
+        }
+
+        /** Pre-encoded Content-Type, ETag and Last-Modified lines. */
+        public byte[] getEntityHeaders() {
+            return this.entityHeaders;
+        }
+
+        /** Pre-encoded ETag and Last-Modified lines for 304 responses. */
+        public byte[] getValidatorHeaders() {
+            return this.validatorHeaders;
+        }
+
+        public File getFile() {
+            return this.file;
+        }
+
+        public long getLength() {
+            return this.length;
+        }
+
+        public long getLastModified() {
+            return this.lastModified;
+        }
+
+        public String getEtag() {
+            return this.etag;
+        }
+
+        public ContentType getContentType() {
+            return this.contentType;
+        }
+
+        long getCachedBytes() {
+            return this.body != null ? this.body.capacity() : 0;
+        }
+    }
+
+    static String formatHttpDate(long epochMillis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC));
+    }
+
+    static long parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
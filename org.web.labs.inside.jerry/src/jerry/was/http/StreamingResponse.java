@@ -0,0 +1,251 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.web.labs.inside.jerry.was.status.ContentType;
+import org.web.labs.inside.jerry.was.status.HeaderName;
+import org.web.labs.inside.jerry.was.status.Status;
+import org.web.labs.inside.jerry.was.toyservlet.ToyResponse;
+
+/**
+ * StreamingResponse - ToyResponse connected to a client connection.
+ *
+ * Output is collected in one fixed-size chunk buffer. When it fills up (or the
+ * servlet flushes) the head is sent together with the first chunk, framed with
+ * Transfer-Encoding: chunked, or raw when a Content-Length was declared. A body
+ * that fits in the buffer is sent as a plain Content-Length response by finish().
+ *
+ * The buffer reserves room for the chunk-size line in front of the data and the
+ * CRLF after it, so every chunk goes out with a single write and no copying.
+ */
+public class StreamingResponse implements ToyResponse {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    // Up to 8 hex digits and CRLF
+    private static final int CHUNK_HEADER_SPACE = 10;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final HttpConnection connection;
+    private final boolean chunkedAllowed;
+    private final HttpResponse head = new HttpResponse(Status.OK);
+    private final byte[] chunk;
+    private final int dataEnd;
+    private final OutputStream body = new Body();
+    private int count = CHUNK_HEADER_SPACE;
+    private long contentLength = -1;
+    private boolean committed = false;
+    private boolean chunked = false;
+    private long bodyBytes = 0;
+    private long bytesWritten = 0;
+    private Writer writer;
+
+    /**
+     * @param chunkedAllowed whether the client understands chunked transfer encoding (HTTP/1.1);
+     *                       otherwise a body of unknown length is delimited by closing the connection
+     */
+    public StreamingResponse(HttpConnection connection, boolean chunkedAllowed) {
+        this(connection, chunkedAllowed, DEFAULT_CHUNK_SIZE);
+    }
+
+    public StreamingResponse(HttpConnection connection, boolean chunkedAllowed, int chunkSize) {
+        this.connection = connection;
+        this.chunkedAllowed = chunkedAllowed;
+        this.chunk = new byte[CHUNK_HEADER_SPACE + chunkSize + 2];
+        this.dataEnd = CHUNK_HEADER_SPACE + chunkSize;
+        this.head.addHeader(HeaderName.CONTENT_TYPE, ContentType.TEXT_HTML);
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        this.checkNotCommitted();
+        this.head.addHeader(HeaderName.CONTENT_TYPE, contentType);
+    }
+
+    @Override
+    public void setContentLength(long length) {
+        this.checkNotCommitted();
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative content length: " + length);
+        }
+        this.contentLength = length;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return this.body;
+    }
+
+    @Override
+    public Writer getWriter() {
+        if (this.writer == null) {
+            this.writer = new OutputStreamWriter(this.body, StandardCharsets.UTF_8);
+        }
+        return this.writer;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return this.committed;
+    }
+
+    public Status getStatus() {
+        return this.head.getStatus();
+    }
+
+    /**
+     * Bytes sent to the client so far, head and framing included.
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten;
+    }
+
+    /**
+     * Send whatever is still buffered and end the body.
+     *
+     * @return number of bytes written for the whole response
+     * @throws IOException also when fewer bytes were written than the declared Content-Length
+     */
+    public long finish() throws IOException {
+        if (this.writer != null) {
+            this.writer.flush();
+        }
+        OutputStream out = this.connection.getOutputStream();
+        if (!this.committed) {
+            int size = this.count - CHUNK_HEADER_SPACE;
+            if (this.contentLength >= 0 && this.contentLength != size) {
+                throw new IOException("Content-Length " + this.contentLength + " declared, " + size + " bytes written");
+            }
+            // Everything fit in one buffer: a plain response with a known length
+            this.committed = true;
+            this.addConnectionHeader();
+            this.head.setBody(ByteBuffer.wrap(this.chunk, CHUNK_HEADER_SPACE, size));
+            this.bytesWritten = this.head.writeTo(out, null, this.connection.getResponseBuffer());
+            return this.bytesWritten;
+        }
+
+        this.sendChunk();
+        if (this.chunked) {
+            out.write(LAST_CHUNK);
+            this.bytesWritten += LAST_CHUNK.length;
+        } else if (this.contentLength >= 0 && this.bodyBytes != this.contentLength) {
+            throw new IOException("Content-Length " + this.contentLength + " declared, " + this.bodyBytes + " bytes written");
+        }
+        out.flush();
+        return this.bytesWritten;
+    }
+
+    private void checkNotCommitted() {
+        if (this.committed) {
+            throw new IllegalStateException("Response already committed");
+        }
+    }
+
+    private void addConnectionHeader() {
+        this.head.addHeader(HeaderName.CONNECTION, this.connection.isKeepAlive() ? "keep-alive" : "close");
+    }
+
+    /**
+     * Send the buffered data, preceded by the head when it has not gone out yet.
+     */
+    private void sendChunk() throws IOException {
+        int size = this.count - CHUNK_HEADER_SPACE;
+        if (this.committed && size == 0) {
+            return;
+        }
+        ResponseBuffer buffer = this.connection.getResponseBuffer();
+        buffer.reset();
+        if (!this.committed) {
+            this.commit(buffer);
+        }
+
+        int start = CHUNK_HEADER_SPACE;
+        int end = this.count;
+        if (this.chunked && size > 0) {
+            start = this.writeChunkHeader(size);
+            this.chunk[end++] = '\r';
+            this.chunk[end++] = '\n';
+        }
+        buffer.write(this.chunk, start, end - start);
+        this.bytesWritten += buffer.writeTo(this.connection.getOutputStream());
+        this.count = CHUNK_HEADER_SPACE;
+    }
+
+    private void commit(ResponseBuffer buffer) {
+        this.committed = true;
+        if (this.contentLength < 0) {
+            if (this.chunkedAllowed) {
+                this.chunked = true;
+                this.head.addHeader(HeaderName.TRANSFER_ENCODING, "chunked");
+            } else {
+                this.connection.disableKeepAlive();
+            }
+        }
+        this.addConnectionHeader();
+        this.head.writeHead(buffer, this.chunked ? -1 : this.contentLength);
+    }
+
+    /**
+     * Write "size CRLF" right before the data.
+     *
+     * @return index the chunk starts at
+     */
+    private int writeChunkHeader(int size) {
+        int pos = CHUNK_HEADER_SPACE;
+        this.chunk[--pos] = '\n';
+        this.chunk[--pos] = '\r';
+        do {
+            this.chunk[--pos] = HEX_DIGITS[size & 0xf];
+            size >>>= 4;
+        } while (size != 0);
+        return pos;
+    }
+
+    /**
+     * Stream servlets write to; fills the chunk buffer.
+     */
+    private class Body extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            if (contentLength >= 0 && bodyBytes + 1 > contentLength) {
+                throw new IOException("Writing past Content-Length " + contentLength);
+            }
+            bodyBytes++;
+            chunk[count++] = (byte) b;
+            if (count == dataEnd) {
+                sendChunk();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (contentLength >= 0 && bodyBytes + len > contentLength) {
+                throw new IOException("Writing past Content-Length " + contentLength);
+            }
+            bodyBytes += len;
+            while (len > 0) {
+                int n = Math.min(len, dataEnd - count);
+                System.arraycopy(b, off, chunk, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == dataEnd) {
+                    sendChunk();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            sendChunk();
+            connection.getOutputStream().flush();
+        }
+    }
+}
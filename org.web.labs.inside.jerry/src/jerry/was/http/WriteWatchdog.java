@@ -0,0 +1,59 @@
+package org.web.labs.inside.jerry.was.http;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WriteWatchdog - Closes connections whose response write has passed its deadline.
+ *
+ * A blocking socket write ignores SO_TIMEOUT, so a client that stops reading
+ * would hold its worker until the kernel gives up on the connection. One
+ * thread checks every open connection each tick; closing the socket fails the
+ * stalled write and frees the worker.
+ */
+class WriteWatchdog implements Closeable {
+
+    private static final long TICK_MILLIS = 250;
+
+    private final Collection<HttpConnection> connections;
+    private final LongAdder timeouts = new LongAdder();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    WriteWatchdog(Collection<HttpConnection> connections) {
+        this.connections = connections;
+        this.thread = new Thread(this::run, "write-watchdog");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Connections closed because a write missed its deadline.
+     */
+    long getTimeoutCount() {
+        return this.timeouts.sum();
+    }
+
+    private void run() {
+        while (this.running) {
+            try {
+                Thread.sleep(TICK_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            for (HttpConnection connection : this.connections) {
+                if (connection.expireWrite(now)) {
+                    this.timeouts.increment();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.running = false;
+        this.thread.interrupt();
+    }
+}
@@ -0,0 +1,310 @@
+package org.web.labs.inside.jerry.was.log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * AccessLog - Asynchronous structured access log.
+ *
+ * Request threads claim a slot in a preallocated ring buffer with one CAS and
+ * copy the raw fields into it; nothing is formatted on the request path. A
+ * single background thread drains the ring, formats records as logfmt lines
+ * ({@code time=... remote=... method=GET path="/" status=200 bytes=19 latency_us=84})
+ * and writes them in batches through a FileChannel, rotating the file once it
+ * passes the size limit. When the ring is full, records are dropped and counted
+ * rather than blocking the request thread.
+ */
+public class AccessLog implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(AccessLog.class.getName());
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final long DEFAULT_MAX_FILE_BYTES = 64L * 1024 * 1024;
+    private static final int DEFAULT_MAX_FILES = 5;
+    private static final int BATCH_BYTES = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    // Bounded multi-producer queue: slot i is writable for ticket t when sequence == t,
+    // readable when sequence == t + 1
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0; // drainer thread only
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    private final Thread drainer;
+    private volatile boolean running = true;
+    private FileChannel channel;
+    private long fileBytes;
+
+    public AccessLog(Path file) throws IOException {
+        this(file, DEFAULT_CAPACITY, DEFAULT_MAX_FILE_BYTES, DEFAULT_MAX_FILES);
+    }
+
+    /**
+     * @param capacity ring size, rounded up to a power of two
+     * @param maxFileBytes size after which the file is rotated to file.1, file.2, ...
+     * @param maxFiles rotated files kept besides the current one
+     */
+    public AccessLog(Path file, int capacity, long maxFileBytes, int maxFiles) throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.slots = new Slot[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            this.slots[i] = new Slot();
+            this.sequences.set(i, i);
+        }
+
+        this.openFile();
+
+        this.drainer = new Thread(this::drainLoop, "access-log");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Queue one access record. Never blocks.
+     *
+     * @param remote client address (InetAddress or SocketAddress), may be null
+     * @param method request method, formatted with toString() by the drainer
+     * @return false when the ring was full and the record was dropped
+     */
+    public boolean log(Object remote, Object method, String path, int status, long bytes, long latencyNanos) {
+        long ticket = this.tail.get();
+        while (true) {
+            int index = (int) ticket & this.mask;
+            long available = this.sequences.get(index) - ticket;
+            if (available == 0) {
+                if (this.tail.compareAndSet(ticket, ticket + 1)) {
+                    break;
+                }
+                ticket = this.tail.get();
+            } else if (available < 0) {
+                this.dropped.increment();
+                return false;
+            } else {
+                ticket = this.tail.get();
+            }
+        }
+
+        int index = (int) ticket & this.mask;
+        Slot slot = this.slots[index];
+        slot.timeMillis = System.currentTimeMillis();
+        slot.remote = remote;
+        slot.method = method;
+        slot.path = path;
+        slot.status = status;
+        slot.bytes = bytes;
+        slot.latencyNanos = latencyNanos;
+        this.sequences.lazySet(index, ticket + 1);
+        return true;
+    }
+
+    /**
+     * Records dropped because the ring was full.
+     */
+    public long getDroppedCount() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * Records written to the file.
+     */
+    public long getWrittenCount() {
+        return this.written.sum();
+    }
+
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Stop the drainer after it has written everything queued so far.
+     */
+    @Override
+    public void close() throws IOException {
+        this.running = false;
+        LockSupport.unpark(this.drainer);
+        try {
+            this.drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        StringBuilder batch = new StringBuilder(BATCH_BYTES);
+        try {
+            while (true) {
+                boolean stopping = !this.running;
+                int drained = this.drain(batch);
+                if (batch.length() > 0) {
+                    this.write(batch);
+                    batch.setLength(0);
+                }
+                if (drained == 0) {
+                    if (stopping) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Access log disabled after write failure: " + this.file, e);
+            this.running = false;
+        } finally {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Error closing access log", e);
+            }
+        }
+    }
+
+    /**
+     * Format queued records into the batch until it is full or the ring is empty.
+     */
+    private int drain(StringBuilder batch) {
+        int count = 0;
+        while (batch.length() < BATCH_BYTES) {
+            int index = (int) this.head & this.mask;
+            if (this.sequences.get(index) != this.head + 1) {
+                break;
+            }
+            Slot slot = this.slots[index];
+            slot.format(batch);
+            slot.clear();
+            this.sequences.lazySet(index, this.head + this.slots.length);
+            this.head++;
+            count++;
+        }
+        this.written.add(count);
+        return count;
+    }
+
+    private void write(StringBuilder batch) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(batch.toString());
+        if (this.fileBytes + bytes.remaining() > this.maxFileBytes && this.fileBytes > 0) {
+            this.rotate();
+        }
+        while (bytes.hasRemaining()) {
+            this.fileBytes += this.channel.write(bytes);
+        }
+    }
+
+    private void rotate() throws IOException {
+        this.channel.close();
+        for (int i = this.maxFiles - 1; i >= 1; i--) {
+            Path older = this.rotated(i);
+            if (Files.exists(older)) {
+                Files.move(older, this.rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (this.maxFiles > 0) {
+            Files.move(this.file, this.rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(this.file);
+        }
+        this.openFile();
+    }
+
+    private Path rotated(int generation) {
+        return this.file.resolveSibling(this.file.getFileName() + "." + generation);
+    }
+
+    private void openFile() throws IOException {
+        Path parent = this.file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(this.file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.fileBytes = this.channel.size();
+    }
+
+    /**
+     * Preallocated record; fields are plain because the sequence publishes them.
+     */
+    private static class Slot {
+        long timeMillis;
+        Object remote;
+        Object method;
+        String path;
+        int status;
+        long bytes;
+        long latencyNanos;
+
+        void format(StringBuilder out) {
+            out.append("time=").append(Instant.ofEpochMilli(this.timeMillis))
+               .append(" remote=").append(formatAddress(this.remote))
+               .append(" method=").append(this.method)
+               .append(" path=\"");
+            appendEscaped(out, this.path);
+            out.append("\" status=").append(this.status)
+               .append(" bytes=").append(this.bytes)
+               .append(" latency_us=").append(TimeUnit.NANOSECONDS.toMicros(this.latencyNanos))
+               .append('\n');
+        }
+
+        void clear() {
+            this.remote = null;
+            this.method = null;
+            this.path = null;
+        }
+
+        private static String formatAddress(Object remote) {
+            if (remote instanceof InetAddress) {
+                return ((InetAddress) remote).getHostAddress();
+            }
+            if (remote instanceof InetSocketAddress) {
+                InetAddress address = ((InetSocketAddress) remote).getAddress();
+                return address != null ? address.getHostAddress() : ((InetSocketAddress) remote).getHostString();
+            }
+            return remote != null ? remote.toString() : "-";
+        }
+
+        private static void appendEscaped(StringBuilder out, String value) {
+            if (value == null) {
+                return;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    out.append('\\').append(c);
+                } else if (c < 0x20 || c == 0x7f) {
+                    out.append(String.format("\\x%02x", (int) c));
+                } else {
+                    out.append(c);
+                }
+            }
+        }
+    }
+}
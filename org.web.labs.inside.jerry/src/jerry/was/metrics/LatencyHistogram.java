@@ -0,0 +1,107 @@
+package org.web.labs.inside.jerry.was.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram - Lock-free latency distribution in log-linear buckets.
+ *
+ * Values are recorded in microseconds. Every power of two is split into
+ * SUB_BUCKETS linear sub-buckets, so the relative error stays within 25%
+ * from 1 microsecond up to about a minute. Each bucket is a LongAdder, so
+ * concurrent recorders update striped cells instead of one contended counter.
+ *
+ * Bucket i holds values in (lower(i), lower(i + 1)], which makes every power
+ * of two an exact, inclusive Prometheus "le" bound.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 26; // 2^26 us ~ 67 s
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    // Exported "le" bounds: powers of two from 64 us
+    private static final int FIRST_EXPORTED_MAGNITUDE = 6;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder overflow = new LongAdder();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long duration, TimeUnit unit) {
+        this.recordMicros(unit.toMicros(duration));
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        int index = bucketIndex(micros);
+        if (index < BUCKET_COUNT) {
+            this.buckets[index].increment();
+        } else {
+            this.overflow.increment();
+        }
+        this.count.increment();
+        this.sumMicros.add(micros);
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public long getSumMicros() {
+        return this.sumMicros.sum();
+    }
+
+    /**
+     * Write _bucket, _sum and _count samples in Prometheus text format.
+     *
+     * @param labels label pairs without braces, e.g. route="/health"; may be empty
+     */
+    public void writePrometheus(StringBuilder out, String name, String labels) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        int index = 0;
+        for (int magnitude = FIRST_EXPORTED_MAGNITUDE; magnitude <= MAX_MAGNITUDE; magnitude++) {
+            long bound = 1L << magnitude;
+            // Buckets below the bound end at most at the bound
+            int end = bucketIndex(bound - 1) + 1;
+            for (; index < end; index++) {
+                cumulative += this.buckets[index].sum();
+            }
+            out.append(name).append("_bucket{").append(prefix).append("le=\"")
+               .append(bound / 1e6).append("\"} ").append(cumulative).append('\n');
+        }
+        for (; index < BUCKET_COUNT; index++) {
+            cumulative += this.buckets[index].sum();
+        }
+        cumulative += this.overflow.sum();
+
+        String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum").append(suffix).append(' ').append(this.sumMicros.sum() / 1e6).append('\n');
+        out.append(name).append("_count").append(suffix).append(' ').append(cumulative).append('\n');
+    }
+
+    /**
+     * Index of the bucket holding the value, so that the value is above the
+     * bucket's lower bound and at most its upper bound.
+     */
+    static int bucketIndex(long micros) {
+        long v = micros > 0 ? micros - 1 : 0;
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+}
@@ -0,0 +1,206 @@
+package org.web.labs.inside.jerry.was.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * ServerMetrics - Request counters, latency histograms and gauges for one server,
+ * exported in Prometheus text format.
+ *
+ * Recording never takes a lock: routes are looked up in a ConcurrentHashMap and
+ * every counter is a LongAdder. Gauges are read from suppliers at export time.
+ * Route names must come from a small fixed set (route templates, not raw paths).
+ */
+public class ServerMetrics {
+
+    /** Media type of the Prometheus text exposition format. */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final int MAX_STATUS = 600;
+
+    private final String prefix;
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final List<Sample> samples = new ArrayList<>();
+    private final List<Consumer<StringBuilder>> collectors = new ArrayList<>();
+
+    /**
+     * @param prefix metric name prefix, e.g. "jerry_http"
+     */
+    public ServerMetrics(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Count one finished request and record how long it took.
+     */
+    public void recordRequest(String route, int status, long durationNanos) {
+        Route metrics = this.routes.get(route);
+        if (metrics == null) {
+            metrics = this.routes.computeIfAbsent(route, r -> new Route());
+        }
+        metrics.latency.record(durationNanos, TimeUnit.NANOSECONDS);
+        metrics.countStatus(status);
+        this.requests.increment();
+    }
+
+    /**
+     * Requests recorded over all routes.
+     */
+    public long getRequestCount() {
+        return this.requests.sum();
+    }
+
+    public String getPrefix() {
+        return this.prefix;
+    }
+
+    public void addBytesIn(long bytes) {
+        this.bytesIn.add(bytes);
+    }
+
+    public void addBytesOut(long bytes) {
+        this.bytesOut.add(bytes);
+    }
+
+    public long getBytesIn() {
+        return this.bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return this.bytesOut.sum();
+    }
+
+    /**
+     * Register a value that goes up and down, read when metrics are exported.
+     */
+    public synchronized ServerMetrics gauge(String name, String help, DoubleSupplier value) {
+        this.samples.add(new Sample(this.prefix + "_" + name, help, "gauge", value));
+        return this;
+    }
+
+    /**
+     * Register a monotonically increasing value kept elsewhere, e.g. a LongAdder.
+     */
+    public synchronized ServerMetrics counter(String name, String help, DoubleSupplier value) {
+        this.samples.add(new Sample(this.prefix + "_" + name + "_total", help, "counter", value));
+        return this;
+    }
+
+    /**
+     * Register a callback that appends metrics whose label sets change at runtime,
+     * already in text exposition format.
+     */
+    public synchronized ServerMetrics collector(Consumer<StringBuilder> collector) {
+        this.collectors.add(collector);
+        return this;
+    }
+
+    /**
+     * Render every metric in Prometheus text exposition format.
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        // Stable output order for diffing and scraping
+        Map<String, Route> sorted = new TreeMap<>(this.routes);
+
+        String requests = this.prefix + "_requests_total";
+        header(out, requests, "Requests served, by route and status.", "counter");
+        for (Map.Entry<String, Route> entry : sorted.entrySet()) {
+            Route route = entry.getValue();
+            for (int status = 0; status < MAX_STATUS; status++) {
+                LongAdder count = route.statusCounts.get(status);
+                if (count != null) {
+                    out.append(requests).append("{route=\"").append(escape(entry.getKey()))
+                       .append("\",status=\"").append(status).append("\"} ").append(count.sum()).append('\n');
+                }
+            }
+        }
+
+        String duration = this.prefix + "_request_duration_seconds";
+        header(out, duration, "Request latency, by route.", "histogram");
+        for (Map.Entry<String, Route> entry : sorted.entrySet()) {
+            entry.getValue().latency.writePrometheus(out, duration, "route=\"" + escape(entry.getKey()) + "\"");
+        }
+
+        writeSample(out, this.prefix + "_received_bytes_total", "Request bytes read from clients.", "counter", this.bytesIn.sum());
+        writeSample(out, this.prefix + "_sent_bytes_total", "Response bytes written to clients.", "counter", this.bytesOut.sum());
+
+        synchronized (this) {
+            for (Sample sample : this.samples) {
+                writeSample(out, sample.name, sample.help, sample.type, sample.value.getAsDouble());
+            }
+            for (Consumer<StringBuilder> collector : this.collectors) {
+                collector.accept(out);
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeSample(StringBuilder out, String name, String help, String type, double value) {
+        header(out, name, help, type);
+        out.append(name).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    /**
+     * Append the # HELP and # TYPE lines for a metric family.
+     */
+    public static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Escape a label value for use inside double quotes.
+     */
+    public static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class Route {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicReferenceArray<LongAdder> statusCounts = new AtomicReferenceArray<>(MAX_STATUS);
+
+        void countStatus(int status) {
+            if (status < 0 || status >= MAX_STATUS) {
+                status = 0;
+            }
+            LongAdder count = this.statusCounts.get(status);
+            if (count == null) {
+                this.statusCounts.compareAndSet(status, null, new LongAdder());
+                count = this.statusCounts.get(status);
+            }
+            count.increment();
+        }
+    }
+
+    private static class Sample {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final DoubleSupplier value;
+
+        Sample(String name, String help, String type, DoubleSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
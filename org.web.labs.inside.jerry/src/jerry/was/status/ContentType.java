@@ -1,5 +1,6 @@
 package org.web.labs.inside.jerry.was.status;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -9,15 +10,15 @@ import java.util.Set;
 import java.util.stream.Stream;
 
 public enum ContentType {
-    TEXT_PLAIN("text/plain", "txt"),
-    TEXT_HTML("text/html", "html,htm"),
-    TEXT_CSS("text/css", "css"),
-    TEXT_XML("text/xml", "xml"),
-    APPLICATION_JAVASCRIPT("application/javascript", "js"),
-    APPLICATION_JSON("application/json", "json"),
-    IMAGE_JPEG("image/jpeg", "jpg,jpeg"),
-    IMAGE_PNG("image/png", "png"),
-    IMAGE_GIF("image/gif", "gif"),
+    TEXT_PLAIN("text/plain", "txt", true),
+    TEXT_HTML("text/html", "html,htm", true),
+    TEXT_CSS("text/css", "css", true),
+    TEXT_XML("text/xml", "xml", true),
+    APPLICATION_JAVASCRIPT("application/javascript", "js", true),
+    APPLICATION_JSON("application/json", "json", true),
+    IMAGE_JPEG("image/jpeg", "jpg,jpeg", false),
+    IMAGE_PNG("image/png", "png", false),
+    IMAGE_GIF("image/gif", "gif", false),
     ;
     
     private static final Map<String, ContentType> EXTENSION_CONTENT_TYPE_MAP = new HashMap<>();
@@ -32,12 +33,30 @@ public enum ContentType {
     }
     
     private final String text;
+    private final byte[] bytes;
     private final Set<String> extensions = new HashSet<>();
+    private final boolean compressible;
     
-    private ContentType(String text, String extensions) {
+    private ContentType(String text, String extensions, boolean compressible) {
         this.text = text;
+        this.compressible = compressible;
+        this.bytes = text.getBytes(StandardCharsets.US_ASCII);
         this.extensions.addAll(Arrays.asList(extensions.split(",")));
     }
+    
+    /**
+     * Encoded media type, used as a header value without re-encoding.
+     */
+    public byte[] getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * False for formats that are already compressed, where gzip only costs CPU.
+     */
+    public boolean isCompressible() {
+        return this.compressible;
+    }
 
     @Override
     public String toString() {
@@ -48,4 +67,8 @@ public enum ContentType {
         Objects.requireNonNull(extension);
         return EXTENSION_CONTENT_TYPE_MAP.getOrDefault(extension.toUpperCase(), TEXT_PLAIN);
     };
+    
+    public static ContentType fromFileName(String fileName) {
+        return toContentType(fileName.substring(fileName.lastIndexOf('.') + 1));
+    }
 }
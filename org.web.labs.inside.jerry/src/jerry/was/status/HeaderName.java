@@ -0,0 +1,69 @@
+package org.web.labs.inside.jerry.was.status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * HeaderName - Common HTTP header names with their pre-encoded "Name: " prefix.
+ *
+ * Request headers listed here are also indexed by ordinal when a request is
+ * parsed, so looking them up does not scan the header fields.
+ */
+public enum HeaderName {
+    CONTENT_TYPE("Content-Type"),
+    CONTENT_LENGTH("Content-Length"),
+    CONNECTION("Connection"),
+    TRANSFER_ENCODING("Transfer-Encoding"),
+    CONTENT_ENCODING("Content-Encoding"),
+    VARY("Vary"),
+    ACCEPT_RANGES("Accept-Ranges"),
+    CONTENT_RANGE("Content-Range"),
+    ETAG("ETag"),
+    LAST_MODIFIED("Last-Modified"),
+    SERVER("Server"),
+    RETRY_AFTER("Retry-After"),
+    HOST("Host"),
+    ACCEPT_ENCODING("Accept-Encoding"),
+    EXPECT("Expect"),
+    RANGE("Range"),
+    IF_RANGE("If-Range"),
+    IF_NONE_MATCH("If-None-Match"),
+    IF_MODIFIED_SINCE("If-Modified-Since"),
+    ;
+    
+    private static final Map<String, HeaderName> NAME_MAP = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    
+    static {
+        for (HeaderName name : HeaderName.values()) {
+            NAME_MAP.put(name.text, name);
+        }
+    }
+    
+    private final String text;
+    private final byte[] prefix;
+    
+    private HeaderName(String text) {
+        this.text = text;
+        this.prefix = (text + ": ").getBytes(StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Encoded "Name: " ready to be followed by the value and CRLF.
+     */
+    public byte[] getPrefixBytes() {
+        return this.prefix;
+    }
+    
+    @Override
+    public String toString() {
+        return this.text;
+    }
+    
+    /**
+     * Case-insensitive lookup; null for names that are not listed here.
+     */
+    public static HeaderName lookup(String name) {
+        return NAME_MAP.get(name);
+    }
+}
@@ -1,18 +1,18 @@
 package org.web.labs.inside.jerry.was.status;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
 
 import static org.web.labs.inside.jerry.was.status.Constant.*;
 
 import org.web.labs.inside.jerry.was.http.EmptyRequestException;
+import org.web.labs.inside.jerry.was.http.HttpInputStream;
 
 public class IOUtil {
     
@@ -31,34 +31,31 @@ public class IOUtil {
     }
 
     public static String readLine(InputStream in) throws IOException {
-        List<Byte> list = new ArrayList<>();
+        if (in instanceof HttpInputStream) {
+            return ((HttpInputStream) in).readLine();
+        }
+        
+        // Unbuffered stream: read byte by byte so nothing past the line is consumed
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int previous = -1;
         
         while (true) {
-            byte b = (byte)in.read();
+            int b = in.read();
             
             if (b == -1) {
                 throw new EmptyRequestException();
             }
             
-            list.add(b);
-            
-            int size = list.size();
-            if (2 <= size) {
-                char cr = (char)list.get(size - 2).byteValue();
-                char lf = (char)list.get(size - 1).byteValue();
-                
-                if (cr == '\r' && lf == '\n') {
-                    break;
-                }
+            if (b == '\n' && previous == '\r') {
+                break;
             }
+            if (previous != -1) {
+                line.write(previous);
+            }
+            previous = b;
         }
         
-        byte[] buffer = new byte[list.size() - 2]; // CRLF �겗�늽歷쎼굢�걲
-        for (int i = 0; i < list.size() - 2; i++) {
-            buffer[i] = list.get(i);
-        }
-        
-        return new String(buffer, UTF_8);
+        return new String(line.toByteArray(), UTF_8);
     }
     
     public static InputStream toInputStream(String string) {
@@ -66,7 +63,6 @@ public class IOUtil {
     }
     
     public static String toString(byte[] buffer) {
-    	System.out.println(new String(buffer, UTF_8));
         return new String(buffer, UTF_8);
     }
     
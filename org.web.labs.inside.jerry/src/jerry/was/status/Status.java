@@ -1,21 +1,50 @@
 package org.web.labs.inside.jerry.was.status;
 
+import java.nio.charset.StandardCharsets;
+
 public enum Status {
+	CONTINUE("100 Continue"),
 	OK("200 OK"),
 	CREATED("201 Created"),
 	NO_CONTENT("204 No Content"),
+	PARTIAL_CONTENT("206 Partial Content"),
+	NOT_MODIFIED("304 Not Modified"),
 	BAD_REQUEST("400 Bad Request"),
 	UNAUTHORIZED("401 Unauthorized"),
 	FORBIDDEN("403 Forbidden"),
 	NOT_FOUND("404 Not Found"),
 	METHOD_NOT_ALLOWED("405 Method Not Allowed"),
+	PAYLOAD_TOO_LARGE("413 Payload Too Large"),
+	RANGE_NOT_SATISFIABLE("416 Range Not Satisfiable"),
 	INTERNAL_ERROR("500 Internal Server Error"),
 	SERVICE_UNAVAILABLE("503 Service Unavailable");
 
 	private final String text;
+	private final int code;
+	private final byte[] statusLine;
 
 	private Status(String text) {
 		this.text = text;
+		this.code = Integer.parseInt(text.substring(0, 3));
+		this.statusLine = ("HTTP/1.1 " + text + Constant.CRLF).getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Encoded "HTTP/1.1 &lt;code&gt; &lt;reason&gt;" line including CRLF.
+	 */
+	public byte[] getStatusLineBytes() {
+		return this.statusLine;
+	}
+
+	public int getCode() {
+		return this.code;
+	}
+
+	/**
+	 * 204 and 304 responses never carry a body (nor a Content-Length for it).
+	 */
+	public boolean allowsBody() {
+		return this != NO_CONTENT && this != NOT_MODIFIED;
 	}
 
 	@Override
@@ -0,0 +1,39 @@
+package org.web.labs.inside.jerry.was.toyservlet;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Example IAsyncToy that answers after a delay, standing in for a slow
+ * backend call, without holding a thread while it waits.
+ */
+public class AsyncToyServlet implements IAsyncToy {
+	private static final long DELAY_MILLIS = 1000;
+	
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "async-toy-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private String name = "asyncToyServlet";
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public CompletionStage<String> doServiceAsync() {
+		CompletableFuture<String> result = new CompletableFuture<>();
+		String greeting = "<html><h1>" + name + "</h1></html>";
+		TIMER.schedule(() -> result.complete(greeting), DELAY_MILLIS, TimeUnit.MILLISECONDS);
+		return result;
+	}
+}
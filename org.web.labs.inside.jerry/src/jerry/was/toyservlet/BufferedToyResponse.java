@@ -0,0 +1,55 @@
+package org.web.labs.inside.jerry.was.toyservlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ToyResponse that collects the output in memory, for IStreamingToy.doService().
+ */
+class BufferedToyResponse implements ToyResponse {
+  private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+  private Writer writer;
+
+  @Override
+  public void setContentType(String contentType) {
+  }
+
+  @Override
+  public void setContentLength(long length) {
+  }
+
+  @Override
+  public OutputStream getOutputStream() {
+    return body;
+  }
+
+  @Override
+  public Writer getWriter() {
+    if (writer == null) {
+      writer = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+    }
+    return writer;
+  }
+
+  @Override
+  public boolean isCommitted() {
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    if (writer != null) {
+      try {
+        writer.flush();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,22 @@
+package org.web.labs.inside.jerry.was.toyservlet;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Servlet whose response is produced asynchronously.
+ * 
+ * doServiceAsync should return without waiting on I/O; the container writes
+ * the response when the stage completes, so the worker thread is free to
+ * serve other connections meanwhile.
+ */
+public interface IAsyncToy extends IToy {
+  public CompletionStage<String> doServiceAsync();
+  
+  /**
+   * Blocking form for callers that need the result in place.
+   */
+  @Override
+  public default String doService() {
+    return doServiceAsync().toCompletableFuture().join();
+  }
+}
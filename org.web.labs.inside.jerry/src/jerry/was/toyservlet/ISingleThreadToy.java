@@ -0,0 +1,10 @@
+package org.web.labs.inside.jerry.was.toyservlet;
+
+/**
+ * Marker for servlets whose instances are not thread-safe.
+ * 
+ * The container keeps a pool of instances for such a servlet and hands each
+ * request its own instance, so doService never runs concurrently on one object.
+ */
+public interface ISingleThreadToy extends IToy {
+}
@@ -0,0 +1,28 @@
+package org.web.labs.inside.jerry.was.toyservlet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Servlet that writes its response as it produces it.
+ * 
+ * The container hands doService a ToyResponse connected to the socket, so
+ * output reaches the client while the page is still being generated.
+ */
+public interface IStreamingToy extends IToy {
+  public void doService(ToyResponse response) throws IOException;
+  
+  /**
+   * Buffered form for callers that need the whole output as a String.
+   */
+  @Override
+  public default String doService() {
+    BufferedToyResponse response = new BufferedToyResponse();
+    try {
+      doService(response);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return response.toString();
+  }
+}
@@ -0,0 +1,16 @@
+package org.web.labs.inside.jerry.was.toyservlet;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Servlet that accepts multipart/form-data uploads.
+ * 
+ * POST requests with a multipart body go to doUpload once the whole body has
+ * been read: form fields in memory, files spooled to disk. Other requests go to
+ * doService as usual.
+ */
+public interface IUploadToy extends IToy {
+  public String doUpload(Map<String, String> fields, List<ToyFile> files) throws IOException;
+}
@@ -0,0 +1,37 @@
+package org.web.labs.inside.jerry.was.toyservlet;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Example IStreamingToy that writes a large table row by row instead of
+ * building the page as one String.
+ */
+public class StreamingToyServlet implements IStreamingToy {
+	private static final int ROWS = 10000;
+	
+	private String name = "streamingToyServlet";
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void doService(ToyResponse response) throws IOException {
+		response.setContentType("text/html; charset=utf-8");
+		Writer out = response.getWriter();
+		out.write("<html><h1>" + name + "</h1><table>\n");
+		for (int i = 0; i < ROWS; i++) {
+			out.write("<tr><td>");
+			out.write(Integer.toString(i));
+			out.write("</td><td>");
+			out.write(Integer.toHexString(i * 0x9e3779b1));
+			out.write("</td></tr>\n");
+		}
+		out.write("</table></html>");
+	}
+}
@@ -0,0 +1,27 @@
+package org.web.labs.inside.jerry.was.toyservlet;
+
+import java.nio.file.Path;
+
+/**
+ * A file uploaded with a multipart/form-data request.
+ * 
+ * The content has already been written to a temporary file, which the
+ * container deletes once the servlet returns; copy or move it to keep it.
+ */
+public interface ToyFile {
+  public String getFieldName();
+  
+  /**
+   * File name as sent by the client; never use it as a path unchecked.
+   */
+  public String getFileName();
+  
+  /**
+   * @return the part's Content-Type, or null if none was sent
+   */
+  public String getContentType();
+  
+  public long getSize();
+  
+  public Path getPath();
+}
@@ -0,0 +1,34 @@
+package org.web.labs.inside.jerry.was.toyservlet;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Output of a streaming servlet call.
+ * 
+ * Bytes written are sent to the client in chunks as the buffer fills, so a large
+ * page never has to be held in memory at once. The status line and headers go
+ * out with the first chunk; content type and length must be set before that.
+ */
+public interface ToyResponse {
+  public void setContentType(String contentType);
+  
+  /**
+   * Declare the body size up front so it is sent with Content-Length instead of
+   * chunked transfer encoding. Exactly this many bytes must then be written.
+   */
+  public void setContentLength(long length);
+  
+  public OutputStream getOutputStream();
+  
+  /**
+   * UTF-8 writer over getOutputStream(). Flushing either sends what has been
+   * written so far; anything left is sent when doService returns.
+   */
+  public Writer getWriter();
+  
+  /**
+   * @return whether the status line and headers have been sent
+   */
+  public boolean isCommitted();
+}
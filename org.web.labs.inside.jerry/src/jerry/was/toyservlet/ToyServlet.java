@@ -3,7 +3,7 @@
 
 package org.web.labs.inside.jerry.was.toyservlet;
 
-public class ToyServlet implements IToy {
+public class ToyServlet implements ISingleThreadToy {
 	private String name = "toyServlet";
 
 	public void setName(String name) {
@@ -16,7 +16,6 @@ public class ToyServlet implements IToy {
 
 	@Override
 	public String doService() {
-		name += "<html><h1>" + name + "<h1></html>";
-		return name;
+		return "<html><h1>" + name + "</h1></html>";
 	}
 }
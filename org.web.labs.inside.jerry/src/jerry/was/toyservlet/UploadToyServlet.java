@@ -0,0 +1,44 @@
+package org.web.labs.inside.jerry.was.toyservlet;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Example IUploadToy that shows an upload form and reports what was received.
+ */
+public class UploadToyServlet implements IUploadToy {
+	private String name = "uploadToyServlet";
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String doService() {
+		return "<html><h1>" + name + "</h1>"
+				+ "<form method=\"post\" enctype=\"multipart/form-data\">"
+				+ "<input type=\"text\" name=\"title\"> <input type=\"file\" name=\"file\" multiple> "
+				+ "<input type=\"submit\" value=\"Upload\"></form></html>";
+	}
+
+	@Override
+	public String doUpload(Map<String, String> fields, List<ToyFile> files) {
+		StringBuilder page = new StringBuilder("<html><h1>" + name + "</h1><ul>");
+		for (Map.Entry<String, String> field : fields.entrySet()) {
+			page.append("<li>").append(escape(field.getKey())).append(" = ")
+				.append(escape(field.getValue())).append("</li>");
+		}
+		for (ToyFile file : files) {
+			page.append("<li>").append(escape(file.getFieldName())).append(": ")
+				.append(escape(file.getFileName())).append(" (").append(file.getSize()).append(" bytes)</li>");
+		}
+		return page.append("</ul></html>").toString();
+	}
+
+	private static String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+}